@@ -0,0 +1,66 @@
+package de.wbongartz.pattern_recognition.benchmarks;
+
+import java.io.*;
+import java.util.*;
+
+import de.wbongartz.pattern_recognition.NN4PatternRecognition;
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Lädt die Bitmuster für die Benchmarks.
+ * Entweder aus einer der mitgelieferten Konfigdateien (z.B. 'good_set.txt') oder synthetisch über 
+ * 'random:<Breite>x<Höhe>:<Anzahl Muster>', z.B. 'random:64x64:500' für große Netze.
+ * Konfigdateien werden relativ zur System-Property 'nn4.dataDir' gesucht (Voreinstellung: aktuelles Verzeichnis).
+ * @author Wolfgang Bongartz
+ */
+final class Corpus {
+
+	private static final String RANDOM_PREFIX = "random:";
+	private static final double RANDOM_DENSITY = 0.3d; // Anteil der gesetzten Bits in synthetischen Mustern.
+
+	final PatternSet _templates;
+	final int        _numberOfInputs;
+	final double     _epsilon;
+	final int        _maxErrorsPerSample;
+
+	private Corpus(PatternSet templates, double epsilon, int maxErrorsPerSample) {
+		_templates          = templates;
+		_numberOfInputs     = templates.get_pattern(0).get_numberOfBits();
+		_epsilon            = epsilon;
+		_maxErrorsPerSample = maxErrorsPerSample;
+	}
+
+	/**
+	 * @param name Dateiname oder 'random:<Breite>x<Höhe>:<Anzahl Muster>'.
+	 * @return
+	 * @throws IOException
+	 */
+	static Corpus load(String name) throws IOException {
+		if(name.startsWith(RANDOM_PREFIX)) {
+			String[] parts = name.substring(RANDOM_PREFIX.length()).split("[x:]");
+			return createRandom(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+		}
+		File file = new File(System.getProperty("nn4.dataDir", "."), name);
+		NN4PatternRecognition config = new NN4PatternRecognition(file.getPath());
+		return new Corpus(config.get_originalSamples(), config.get_epsilon(), config.get_maxErrorsPerSample());
+	}
+
+	/**
+	 * Erzeugt reproduzierbar zufällige Muster.
+	 */
+	private static Corpus createRandom(int width, int height, int numberOfPatterns) {
+		Random random = new Random(4711);
+		ArrayList<Pattern> patterns = new ArrayList<Pattern>();
+		for(int p=0; p<numberOfPatterns; p++) {
+			boolean[][] bits = new boolean[height][width];
+			for(int i=0; i<height; i++) {
+				for(int j=0; j<width; j++) {
+					bits[i][j] = random.nextDouble() < RANDOM_DENSITY;
+				}
+			}
+			patterns.add(new Pattern("p" + p, bits));
+		}
+		return new Corpus(new PatternSet(patterns, random), 0.1d, 10);
+	}
+
+}
@@ -0,0 +1,128 @@
+package de.wbongartz.pattern_recognition.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import de.wbongartz.pattern_recognition.nnet.*;
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Benchmarks für das neuronale Netz: Erkennung einzelner Bitmuster (auch quantisiert), blockweise Erkennung und eine Trainings-Epoche.
+ * Aufruf: gradle jmh -PjmhArgs="NetworkBenchmark"
+ * @author Wolfgang Bongartz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+
+	private static final int NUMBER_OF_SAMPLES       = 4096; // Muss eine Zweierpotenz sein.
+	private static final int TRAINING_SET_SIZE       = 1000;
+	private static final int NUMBER_OF_WARMUP_EPOCHS = 10;
+	private static final int MINI_BATCH_SIZE         = 32;
+
+	@Param({"good_set.txt", "avg_set.txt", "bad_set.txt", "random:64x64:500"})
+	public String corpus;
+
+	@Param({"Linear", "Binary", "TangensHyperbolicus", "Logistic"})
+	public String activationFunction;
+
+	@Param({"batch", "online", "minibatch"})
+	public String learnMode;
+
+	@Param({"DOUBLE", "FLOAT"})
+	public String precision;
+
+	private PatternAssociator _network;
+	private PatternAssociator _measuredNetwork; // Wie _network, aber mit MatchMetrics.
+	private PatternClassifier _classifier;
+	private BinaryClassifier  _binaryClassifier;
+	private BinaryClassifier  _ternaryClassifier;
+	private NearestTemplateClassifier _nearestTemplateClassifier;
+	private Workspace         _workspace;
+	private PatternSet        _trainingSet;
+	private PatternSet        _sampleSet;
+	private Pattern[]         _samples;
+	private Random            _random;
+	private int               _index;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, InappropriateDataException, NeuralNetworkIsUntrainedException {
+		Corpus corpus = Corpus.load(this.corpus);
+		_random      = new Random(4711);
+		_network     = new PatternAssociator(corpus._numberOfInputs, corpus._templates.size(), corpus._epsilon, ActivationFunction.forName(activationFunction), Precision.valueOf(precision));
+		_trainingSet = corpus._templates.createRandomized(TRAINING_SET_SIZE, corpus._maxErrorsPerSample, true);
+		_network.train(corpus._templates, isBatch(), NUMBER_OF_WARMUP_EPOCHS, _random);
+		_classifier  = _network.freeze();
+		_workspace   = _classifier.createWorkspace();
+		_binaryClassifier  = _classifier.quantize(BinaryClassifier.Quantization.BINARY);
+		_ternaryClassifier = _classifier.quantize(BinaryClassifier.Quantization.TERNARY);
+		_nearestTemplateClassifier = new NearestTemplateClassifier(corpus._templates, null);
+		_measuredNetwork = new PatternAssociator(_classifier, corpus._epsilon);
+		_measuredNetwork.setMetrics(new MatchMetrics());
+		_sampleSet   = corpus._templates.createRandomized(NUMBER_OF_SAMPLES, corpus._maxErrorsPerSample, false);
+		_samples     = new Pattern[NUMBER_OF_SAMPLES];
+		for(int i=0; i<NUMBER_OF_SAMPLES; i++) _samples[i] = _sampleSet.get_pattern(i);
+	}
+
+	private boolean isBatch() {
+		return learnMode.compareTo("batch")==0;
+	}
+
+	private Pattern nextSample() {
+		return _samples[_index++ & (NUMBER_OF_SAMPLES-1)];
+	}
+
+	@Benchmark
+	public String match() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		return _network.match(nextSample());
+	}
+
+	@Benchmark
+	public String matchMeasured() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		return _measuredNetwork.match(nextSample());
+	}
+
+	@Benchmark
+	public int classify() throws InappropriateDataException {
+		return _classifier.classifyIndex(nextSample(), _workspace);
+	}
+
+	@Benchmark
+	public int classifyBinary() throws InappropriateDataException {
+		return _binaryClassifier.classifyIndex(nextSample());
+	}
+
+	@Benchmark
+	public int classifyTernary() throws InappropriateDataException {
+		return _ternaryClassifier.classifyIndex(nextSample());
+	}
+
+	@Benchmark
+	public int classifyNearest() throws InappropriateDataException {
+		return _nearestTemplateClassifier.classifyIndex(nextSample());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_SAMPLES)
+	public int[] matchAll() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		return _network.matchAll(_sampleSet);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TRAINING_SET_SIZE)
+	public void trainEpoch() throws InappropriateDataException {
+		if(learnMode.compareTo("minibatch")==0) {
+			_network.trainMiniBatch(_trainingSet, MINI_BATCH_SIZE, 1, _random, null);
+			return;
+		}
+		_network.train(_trainingSet, isBatch(), 1, _random);
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.wbongartz.pattern_recognition.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Benchmarks für die Bitmuster: Vergleich, zufällige Veränderung, Erzeugung der Zufalls-Bitmuster und zufälliges Durchlaufen.
+ * Aufruf: gradle jmh -PjmhArgs="PatternBenchmark"
+ * @author Wolfgang Bongartz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark {
+
+	@Param({"good_set.txt", "avg_set.txt", "bad_set.txt", "random:64x64:500"})
+	public String corpus;
+
+	@Param({"1000", "50000"})
+	public int numberOfPatterns;
+
+	private Corpus       _corpus;
+	private Pattern      _first;
+	private Pattern      _second;
+	private PatternSet   _trainingSet;
+	private SeedSequence _seeds;
+	private Random       _random;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		_corpus      = Corpus.load(corpus);
+		_first       = _corpus._templates.get_pattern(0);
+		_second      = _corpus._templates.get_pattern(_corpus._templates.size()-1);
+		_trainingSet = _corpus._templates.createRandomized(numberOfPatterns, _corpus._maxErrorsPerSample, true);
+		_seeds       = new SeedSequence(4711);
+		_random      = new Random(4711);
+	}
+
+	@Benchmark
+	public int differences() {
+		return _first.differences(_second);
+	}
+
+	@Benchmark
+	public Pattern changeRandomly() {
+		return _first.changeRandomly(_random);
+	}
+
+	@Benchmark
+	public PatternSet createRandomized() {
+		return _corpus._templates.createRandomized(numberOfPatterns, _corpus._maxErrorsPerSample, false);
+	}
+
+	@Benchmark
+	public void streamRandomized(Blackhole blackhole) {
+		_corpus._templates.streamRandomized(numberOfPatterns, _corpus._maxErrorsPerSample, false, _seeds).forEach(blackhole::consume);
+	}
+
+	@Benchmark
+	public void randomPatternIterator(Blackhole blackhole) {
+		RandomPatternIterator iter = new RandomPatternIterator(_trainingSet, _random);
+		while(iter.hasNext()) blackhole.consume(iter.next());
+	}
+
+}
@@ -2,6 +2,7 @@ package de.wbongartz.pattern_recognition;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.*;
 
 import de.wbongartz.pattern_recognition.nnet.*;
 import de.wbongartz.pattern_recognition.patterns.*;
@@ -13,7 +14,8 @@ import de.wbongartz.pattern_recognition.patterns.*;
  */
 public class NN4PatternRecognition {
 	
-	private Random     	_randomNumberSource    = new Random();
+	private long 		_seed                  = new Random().nextLong(); // Startwert für alle Zufallszahlen-Quellen.
+	private Random     	_randomNumberSource    = null;
 	private PatternSet 	_originalSamples       = null;	// Samples, auf die das Netz trainiert wird.
 	private int        	_patternWidth          = 6;    	// Breite der Patterns.
 	private int        	_patternHeight         = 8;    	// Höhe der Patterns.
@@ -21,12 +23,31 @@ public class NN4PatternRecognition {
 	private int        	_numberOfInputNeurons;			// Anzahl der Input-Neuronen.
 	private int 		_numberOfOutputNeurons;			// Anzahl der Output-Neuronen.
 	private boolean 	_batchLearnMode        = false;	// Steuert den Lernmodus. TRUE=Batch-Learning. FALSE=Online-Learning.
+	private boolean 	_asynchronousLearnMode = false;	// TRUE=Asynchrones Online-Learning mit mehreren Threads.
+	private boolean 	_miniBatchLearnMode    = false;	// TRUE=Mini-Batch-Learning: Anpassung der Gewichte nach je _miniBatchSize Bitmustern.
+	private int 		_miniBatchSize         = 32;	// Anzahl der Bitmuster je Gruppe beim Mini-Batch-Learning.
 	private int 		_numberOfLaps          = 10;	// Anzahl der durchzuführenden Trainingsrunden.
 	private int 		_numberOfRandomSamples = 10;	// Anzahl der zufällig erzeugten Samples, die das Netz erkennen soll.
 	private int 		_maxErrorsPerSample    = 2;		// Maximale Anzahl der Fehler, in denen sich die Zufalls-Samples von den Originalen unterscheiden.
 	private boolean 	_batchMode             = true;	// Steuert den Programmablauf: TRUE=Ablauf ohne User-Interaktion. FALSE=Jedes Sample wird angezeigt.
 	private boolean     _presentOriginals 	   = true;	// Steuert, ob die Originalmuster auch wieder präsentiert werden sollen.
+	private int 		_numberOfThreads       = 1;		// Anzahl der Threads, auf die die Erkennung im Batch-Modus und das Batch-Learning verteilt werden.
+	private int 		_numberOfShards        = 1;		// Anzahl der Teile, in die die Trainingsdaten beim Batch-Learning zerlegt werden.
 	private ActivationFunction _activationFunction = null;
+	private StoppingCriteria _stoppingCriteria = new StoppingCriteria(); // Kriterien für das vorzeitige Ende des Trainings.
+	private int 		_patience              = 0;		// Anzahl der Epochen ohne Verbesserung, nach denen das Training endet. 0=abgeschaltet.
+	private double 		_minImprovement        = 0d;	// Geringste Verbesserung des Fehlers, die als Verbesserung zählt.
+	private int 		_trainingLogInterval   = 0;		// Jede wievielte Trainings-Epoche protokolliert wird. 0=keine Ausgabe.
+	private boolean 	_collectMetrics        = false;	// TRUE=Die Erkennung wird vermessen und per JMX bereitgestellt.
+	private int 		_metricsDumpInterval   = 0;		// Abstand der periodischen Ausgabe der Kennzahlen in Sekunden. 0=keine Ausgabe.
+	private int 		_matchCacheSize        = 0;		// Größe des Ergebnis-Caches bei der Erkennung. 0=kein Cache.
+	private String 		_modelToLoad           = null;	// Modelldatei, aus der das trainierte Netz geladen wird. Das Training entfällt dann.
+	private String 		_modelToSave           = null;	// Modelldatei, in die das trainierte Netz geschrieben wird.
+	private String 		_corpusFile            = null;	// Kompilierte Korpus-Datei, aus der die Original-Samples geladen werden.
+	private Precision 	_precision             = Precision.DOUBLE;	// Genauigkeit der Gewichte.
+	private boolean 	_validatePrecision     = false;	// TRUE=Nach der Erkennung werden float- und double-Gewichte verglichen.
+	private boolean 	_nearestTemplate       = false;	// TRUE=Erkennung über die nächstgelegene Vorlage statt über das neuronale Netz.
+	private BinaryClassifier.Quantization _quantization = null;	// Falls gesetzt, wird nach der Erkennung das quantisierte Netz mit dem trainierten verglichen.
 
 	/**
 	 * @param args
@@ -34,8 +55,13 @@ public class NN4PatternRecognition {
 	public static void main(String[] args) {
 		
 		String filename="good_set.txt";
+		String corpusFile=null;
 		if(args.length==1) {
 			filename=args[0];
+		} else if(args.length==3 && args[0].compareTo("-compile")==0) {
+			// Kompilier-Schritt: Die Bitmuster einer Konfigdatei werden in eine binäre Korpus-Datei geschrieben.
+			filename=args[1];
+			corpusFile=args[2];
 		}
 
 		try {
@@ -43,6 +69,12 @@ public class NN4PatternRecognition {
 			// Programm-Objekt erzeugen.
 			NN4PatternRecognition prog = new NN4PatternRecognition(filename);
 			
+			if(corpusFile!=null) {
+				PatternCorpus.compile(prog.get_originalSamples(), new File(corpusFile));
+				System.out.println("Korpus geschrieben nach:   " + corpusFile);
+				return;
+			}
+
 			// Programm starten.
 			prog.run();
 			
@@ -60,13 +92,50 @@ public class NN4PatternRecognition {
 		loadConfigFile(configFile);
 		
 		_numberOfInputNeurons  = this._patternWidth * this._patternHeight;
-		_numberOfOutputNeurons = this._originalSamples.size();
+		_numberOfOutputNeurons = this._originalSamples.get_labels().length; // Ein Korpus kann mehrere Bitmuster je Name enthalten.
 
 		System.out.println("Anzahl Bits pro Bitmuster: " + _numberOfInputNeurons);
 		System.out.println("davon sind relevant:       " + _originalSamples.getNumberOfRelevantBits());
+		System.out.println("Startwert (seed):          " + _seed);
+		System.out.println("Vektorisiert (SIMD):       " + (PatternAssociator.isVectorized() ? "ja" : "nein"));
 	}
 	
 
+	/**
+	 * @return Die aus der Konfigdatei geladenen Original-Bitmuster.
+	 */
+	public PatternSet get_originalSamples() {
+		return _originalSamples;
+	}
+
+	/**
+	 * @return Anzahl der Input-Neuronen (Bits pro Bitmuster).
+	 */
+	public int get_numberOfInputNeurons() {
+		return _numberOfInputNeurons;
+	}
+
+	/**
+	 * @return Anzahl der Output-Neuronen (Anzahl der Original-Bitmuster).
+	 */
+	public int get_numberOfOutputNeurons() {
+		return _numberOfOutputNeurons;
+	}
+
+	/**
+	 * @return Lernrate.
+	 */
+	public double get_epsilon() {
+		return _epsilon;
+	}
+
+	/**
+	 * @return Höchstzahl der Fehler pro Zufalls-Bitmuster.
+	 */
+	public int get_maxErrorsPerSample() {
+		return _maxErrorsPerSample;
+	}
+
 	/**
 	 * @throws InappropriateDataException 
 	 * @throws NeuralNetworkIsUntrainedException 
@@ -74,56 +143,250 @@ public class NN4PatternRecognition {
 	 */
 	public void run() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
 		
-		// Neuronales Netz erzeugen.
-		PatternAssociator pa = new PatternAssociator(_numberOfInputNeurons, _numberOfOutputNeurons, _epsilon, _activationFunction);
+		// Neuronales Netz erzeugen und trainieren. Die Suche nach der nächstgelegenen Vorlage kommt ohne Netz aus.
+		PatternAssociator pa = _nearestTemplate ? null : createTrainedNetwork();
 
-		// Neuronales Netz trainieren.
-		pa.train(_originalSamples, _batchLearnMode, _numberOfLaps, _randomNumberSource);
-		
-		// Aus den Originalen zufällige Abwandlungen erzeugen.
-		PatternSet randomSamples = _originalSamples.createRandomized(_numberOfRandomSamples, _maxErrorsPerSample, _presentOriginals);
+		// Ab hier wird die Erkennung ggf. vermessen.
+		MatchMetrics metrics = _collectMetrics ? createMetrics() : null;
+		Classifier classifier;
+		if( pa!=null ) {
+			pa.setMetrics(metrics);
+			pa.setMatchCacheSize(_matchCacheSize);
+			classifier = pa.freeze();
+		} else {
+			long start = System.nanoTime();
+			classifier = new NearestTemplateClassifier(_originalSamples, metrics);
+			System.out.printf("Index über %d Vorlagen in %.1f ms aufgebaut.%n", _originalSamples.size(), (System.nanoTime() - start) / 1e6d);
+		}
+
+		// Aus den Originalen zufällige Abwandlungen erzeugen. Die Abwandlungen werden erst bei Bedarf erzeugt.
+		// Jedes Sample hat eine eigene, aus dem Startwert abgeleitete Zufallszahlen-Quelle. Das Ergebnis hängt daher nicht von der Anzahl der Threads ab.
+		// Zu jedem Sample liefert der Stream die Label-Id seiner Vorlage mit.
+		Stream<LabeledPattern> randomSamples = _originalSamples.streamRandomizedWithLabels(_numberOfRandomSamples, _maxErrorsPerSample, _presentOriginals, new SeedSequence(_seed));
+
+		// Zuordnung Output-Neuron -> Label-Id der Original-Samples. Bei einem geladenen Modell kann die Reihenfolge abweichen.
+		// Die Auswertung vergleicht danach nur noch Label-Ids.
+		int[] labelOfOutput = new int[classifier.get_noOfOutputs()];
+		for(int o=0; o<labelOfOutput.length; o++) labelOfOutput[o] = _originalSamples.get_labelId(classifier.get_semantic(o));
 
 		// Dem Netz alle Samples präsentieren und die Ergebnisse ausgeben.
-		Scanner userInput=null;
-		if( ! _batchMode ) userInput=new Scanner(System.in);
-		String answer;
+		long start = System.nanoTime();
 		int errorCounter=0;
 		int sampleCounter=0;
-		for(Pattern sample: randomSamples) {
-			if( ! _batchMode ) {
+		if( _batchMode ) {
+			Evaluation evaluation = Evaluation.evaluate(classifier, labelOfOutput, randomSamples, _numberOfThreads, pa, metrics);
+			errorCounter  = evaluation.get_noOfErrors();
+			sampleCounter = evaluation.get_noOfSamples();
+		} else {
+			Scanner userInput=new Scanner(System.in);
+			String answer;
+			Iterator<LabeledPattern> iter = randomSamples.iterator();
+			while(iter.hasNext()) {
+				LabeledPattern labeledSample = iter.next();
+				Pattern sample = labeledSample.get_pattern();
 				System.out.println("Nächstes Sample:");
 				System.out.println(sample.toString());
 				System.out.print("Erkannt als: ");
-			}
 
-			answer = pa.match(sample);
-			
-			if( ! _batchMode ) {
-				System.out.println(answer);
-				if(answer.compareTo(sample.get_name())==0) {
+				int answerIndex = (pa!=null) ? pa.matchIndex(sample) : classifier.classifyIndex(sample);
+				boolean correct = labelOfOutput[answerIndex]==labeledSample.get_labelId();
+
+				System.out.println(classifier.get_semantic(answerIndex));
+				if(correct) {
 					System.out.println("Das ist korrekt.");
 				} else {
 					System.out.println("Das ist nicht korrekt.");
 				}
 				System.out.println();
-			}
 
-			sampleCounter++;
-			if(answer.compareTo(sample.get_name())!=0) errorCounter++;
+				sampleCounter++;
+				if(!correct) errorCounter++;
+				if(metrics!=null) metrics.recordOutcome(correct);
 
-			if( ! _batchMode ) {
 				System.out.println("Fortsetzen? Dann Enter drücken. Sonst 'ende' eingeben.");
 				answer = userInput.nextLine();
 				if(answer.compareTo("ende")==0) break;
 			}
 		}
 		
+		long duration = System.nanoTime() - start;
 		int correct=sampleCounter-errorCounter;
 		long rate = Math.round( (double) correct / sampleCounter * 100d );
 		System.out.println("Präsentiert wurden " + sampleCounter + " Muster.");
 		System.out.println("Davon wurden " + correct + " korrekt erkannt.");
 		System.out.println("Erkennungsrate: " + rate + "%");
+		if( _batchMode ) System.out.printf("Dauer der Erkennung: %.1f ms (%.0f Muster/s)%n", duration / 1e6d, sampleCounter / (duration / 1e9d));
+
+		if(metrics!=null) {
+			metrics.stopDump();
+			System.out.println(metrics);
+		}
+		if( pa!=null && pa.get_matchCache()!=null ) System.out.println(pa.get_matchCache());
+
+		if( _quantization!=null ) compareQuantized((PatternClassifier) classifier, labelOfOutput);
+		if( _validatePrecision ) validatePrecision();
+
+	}
+
+	/**
+	 * Erzeugt das neuronale Netz und trainiert es, bzw. lädt es aus der Modelldatei. Speichert es ggf. in der Modelldatei.
+	 * @return
+	 * @throws NeuralNetworkIsUntrainedException
+	 * @throws InappropriateDataException
+	 */
+	private PatternAssociator createTrainedNetwork() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		PatternAssociator pa;
+		if( _modelToLoad!=null ) {
+			pa = new PatternAssociator(loadModel(), _epsilon);
+		} else {
+			pa = createNetwork(_precision);
+		}
+		if( _trainingLogInterval>0 ) pa.addTrainingListener(new TrainingLogger(System.out, _trainingLogInterval));
 
+		// Neuronales Netz trainieren. Ein geladenes Modell ist bereits trainiert.
+		if( _modelToLoad!=null ) {
+			System.out.println("Modell geladen aus:        " + _modelToLoad);
+		} else {
+			train(pa, _randomNumberSource);
+		}
+		if( _modelToSave!=null ) {
+			saveModel(pa.freeze());
+			System.out.println("Modell gespeichert in:     " + _modelToSave);
+		}
+		return pa;
+	}
+
+	/**
+	 * Erzeugt ein untrainiertes Netz gemäß Konfiguration.
+	 * @param precision Genauigkeit der Gewichte.
+	 * @return
+	 */
+	private PatternAssociator createNetwork(Precision precision) {
+		PatternAssociator pa = new PatternAssociator(_numberOfInputNeurons, _numberOfOutputNeurons, _epsilon, _activationFunction, precision);
+		pa.setNumberOfShards(_numberOfShards);
+		pa.setNumberOfThreads(_numberOfThreads);
+		return pa;
+	}
+
+	/**
+	 * Trainiert das Netz im konfigurierten Lernmodus und gibt das Ergebnis aus.
+	 * @param pa
+	 * @param randomNumberSource Bestimmt die Reihenfolge der Bitmuster.
+	 * @throws InappropriateDataException
+	 */
+	private void train(PatternAssociator pa, Random randomNumberSource) throws InappropriateDataException {
+		if( _asynchronousLearnMode ) {
+			TrainingResult result = pa.trainAsynchronously(_originalSamples, _numberOfLaps, randomNumberSource, _stoppingCriteria);
+			System.out.printf("Training nach %d Epochen beendet (%s). Mittlerer quadratischer Fehler: %.5f%n", result.get_noOfEpochs(), result.get_stopReason(), result.get_error());
+		} else if( _miniBatchLearnMode ) {
+			TrainingResult result = pa.trainMiniBatch(_originalSamples, _miniBatchSize, _numberOfLaps, randomNumberSource, _stoppingCriteria);
+			System.out.printf("Training nach %d Epochen beendet (%s). Mittlerer quadratischer Fehler: %.5f%n", result.get_noOfEpochs(), result.get_stopReason(), result.get_error());
+		} else {
+			TrainingResult result = pa.train(_originalSamples, _batchLearnMode, _numberOfLaps, randomNumberSource, _stoppingCriteria);
+			System.out.printf("Training nach %d Epochen beendet (%s). Mittlerer quadratischer Fehler: %.5f%n", result.get_noOfEpochs(), result.get_stopReason(), result.get_error());
+		}
+	}
+
+	/**
+	 * Vergleicht das trainierte Netz mit seiner quantisierten Variante (siehe BinaryClassifier) auf denselben Samples.
+	 * Ausgegeben werden beide Erkennungsraten, deren Abweichung, die Anzahl unterschiedlicher Antworten, 
+	 * der Durchsatz (blockweise gemessen) und der Speicherbedarf der Gewichte.
+	 * @param classifier Das trainierte Netz.
+	 * @param labelOfOutput Label-Id der Original-Samples zu jedem Output-Neuron.
+	 * @throws InappropriateDataException
+	 */
+	private void compareQuantized(PatternClassifier classifier, int[] labelOfOutput) throws InappropriateDataException {
+		BinaryClassifier quantized = classifier.quantize(_quantization);
+
+		int   correct          = 0;
+		int   correctQuantized = 0;
+		int   disagreements    = 0;
+		int   sampleCounter    = 0;
+		long  time             = 0L;
+		long  timeQuantized    = 0L;
+		int[] answers          = new int[Evaluation.BLOCK_SIZE];
+		int[] answersQuantized = new int[Evaluation.BLOCK_SIZE];
+		int[] labels           = new int[Evaluation.BLOCK_SIZE];
+		ArrayList<Pattern> block = new ArrayList<Pattern>(Evaluation.BLOCK_SIZE);
+		Iterator<LabeledPattern> iter = _originalSamples.streamRandomizedWithLabels(_numberOfRandomSamples, _maxErrorsPerSample, _presentOriginals, new SeedSequence(_seed)).iterator();
+		while(iter.hasNext()) {
+			block.clear();
+			while(iter.hasNext() && block.size()<Evaluation.BLOCK_SIZE) {
+				LabeledPattern sample = iter.next();
+				labels[block.size()] = sample.get_labelId();
+				block.add(sample.get_pattern());
+			}
+
+			long start = System.nanoTime();
+			for(int i=0; i<block.size(); i++) answers[i] = classifier.classifyIndex(block.get(i));
+			time += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int i=0; i<block.size(); i++) answersQuantized[i] = quantized.classifyIndex(block.get(i));
+			timeQuantized += System.nanoTime() - start;
+
+			for(int i=0; i<block.size(); i++) {
+				int labelId = labels[i];
+				if(labelOfOutput[answers[i]]==labelId) correct++;
+				if(labelOfOutput[answersQuantized[i]]==labelId) correctQuantized++;
+				if(answers[i]!=answersQuantized[i]) disagreements++;
+			}
+			sampleCounter += block.size();
+		}
+
+		long bytes = (long) _numberOfInputNeurons * _numberOfOutputNeurons * classifier.get_precision().get_bytesPerWeight();
+		System.out.println();
+		System.out.println("Vergleich mit dem quantisierten Netz (" + _quantization + "):");
+		System.out.printf("%-8s Erkennungsrate: %.3f%% (%d von %d), %.0f Muster/s, Gewichte: %d Byte%n", classifier.get_precision(), 100d * correct / sampleCounter, correct, sampleCounter, sampleCounter / (time / 1e9d), bytes);
+		System.out.printf("%-8s Erkennungsrate: %.3f%% (%d von %d), %.0f Muster/s, Gewichte: %d Byte%n", _quantization, 100d * correctQuantized / sampleCounter, correctQuantized, sampleCounter, sampleCounter / (timeQuantized / 1e9d), quantized.get_sizeInBytes());
+		System.out.printf("Abweichung der Erkennungsrate: %+.3f Prozentpunkte, unterschiedliche Antworten: %d%n", 100d * (correctQuantized - correct) / sampleCounter, disagreements);
+	}
+
+	/**
+	 * Validierungsbericht für die Genauigkeit der Gewichte: Trainiert je ein Netz mit double- und mit float-Gewichten
+	 * mit demselben Startwert und lässt beide dieselben Samples erkennen. Ausgegeben werden die Erkennungsraten, 
+	 * die Anzahl der Samples, bei denen die Netze unterschiedlich antworten, und der Speicherbedarf der Gewichte.
+	 * @throws NeuralNetworkIsUntrainedException
+	 * @throws InappropriateDataException
+	 */
+	private void validatePrecision() throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		System.out.println();
+		System.out.println("Validierung der Genauigkeit (double gegen float):");
+
+		Precision[] precisions = { Precision.DOUBLE, Precision.FLOAT };
+		PatternClassifier[] classifiers = new PatternClassifier[precisions.length];
+		int[][] labelOfOutput = new int[precisions.length][];
+		for(int n=0; n<precisions.length; n++) {
+			PatternAssociator pa = createNetwork(precisions[n]);
+			System.out.print(precisions[n] + ": ");
+			train(pa, new Random(_seed));
+			classifiers[n] = pa.freeze();
+			labelOfOutput[n] = new int[classifiers[n].get_noOfOutputs()];
+			for(int o=0; o<labelOfOutput[n].length; o++) labelOfOutput[n][o] = _originalSamples.get_labelId(classifiers[n].get_semantic(o));
+		}
+
+		int[] correct = new int[precisions.length];
+		int sampleCounter = 0;
+		int disagreements = 0;
+		Iterator<LabeledPattern> iter = _originalSamples.streamRandomizedWithLabels(_numberOfRandomSamples, _maxErrorsPerSample, _presentOriginals, new SeedSequence(_seed)).iterator();
+		while(iter.hasNext()) {
+			LabeledPattern labeledSample = iter.next();
+			Pattern sample = labeledSample.get_pattern();
+			int[] answers = new int[precisions.length];
+			int labelId = labeledSample.get_labelId();
+			for(int n=0; n<precisions.length; n++) {
+				answers[n] = labelOfOutput[n][classifiers[n].classifyIndex(sample)];
+				if(answers[n]==labelId) correct[n]++;
+			}
+			if(answers[0]!=answers[1]) disagreements++;
+			sampleCounter++;
+		}
+
+		for(int n=0; n<precisions.length; n++) {
+			long bytes = (long) _numberOfInputNeurons * _numberOfOutputNeurons * precisions[n].get_bytesPerWeight();
+			System.out.printf("%-6s Erkennungsrate: %.3f%% (%d von %d), Gewichte: %d Byte%n", precisions[n], 100d * correct[n] / sampleCounter, correct[n], sampleCounter, bytes);
+		}
+		System.out.printf("Abweichung der Erkennungsrate: %+.3f Prozentpunkte, unterschiedliche Antworten: %d%n", 100d * (correct[1] - correct[0]) / sampleCounter, disagreements);
 	}
 
 	/**
@@ -179,24 +442,34 @@ public class NN4PatternRecognition {
 					} else if(key.compareTo("name")==0) {
 						name = value;
 					} else if(key.compareTo("learnmode")==0) {
+						// Jeder Lernmodus setzt alle drei Schalter, damit eine spätere Angabe eine frühere vollständig ersetzt.
 						if(value.compareTo("batch")==0) {
-							_batchLearnMode = true;
+							_batchLearnMode        = true;
+							_asynchronousLearnMode = false;
+							_miniBatchLearnMode    = false;
 						} else if(value.compareTo("online")==0) {
-							_batchLearnMode = false;
+							_batchLearnMode        = false;
+							_asynchronousLearnMode = false;
+							_miniBatchLearnMode    = false;
+						} else if(value.compareTo("asynchronous")==0) {
+							_batchLearnMode        = false;
+							_asynchronousLearnMode = true;
+							_miniBatchLearnMode    = false;
+						} else if(value.compareTo("minibatch")==0) {
+							_batchLearnMode        = false;
+							_asynchronousLearnMode = false;
+							_miniBatchLearnMode    = true;
 						} else {
-							throw new IllegalStateException("Unbekannter Lernmodus. Möglich sind: 'batch' und 'online'. " + lineNo);							
+							throw new IllegalStateException("Unbekannter Lernmodus. Möglich sind: 'batch', 'online', 'minibatch' und 'asynchronous'. " + lineNo);							
 						}
+					} else if(key.compareTo("batchSize")==0) {
+						_miniBatchSize = Integer.parseInt(value);
+						if(_miniBatchSize<1) throw new IllegalStateException("'batchSize' zu gering. Zeile: " + lineNo);
 					} else if(key.compareTo("activation_function")==0) {
-						if(value.compareTo("TangensHyperbolicus")==0) {
-							_activationFunction  = new ActivationFunction_TangensHyperbolicus();
-						} else if(value.compareTo("Linear")==0) {
-							_activationFunction = new ActivationFunction_Linear();
-						} else if(value.compareTo("Logistic")==0) {
-							_activationFunction = new ActivationFunction_Logistic();
-						} else if(value.compareTo("Binary")==0) {
-							_activationFunction = new ActivationFunction_Binary();
-						} else {
-							throw new IllegalStateException("Unbekannte Aktivierungsfunktion. Möglich sind: 'Linear', 'Binary', 'TangensHyperbolicus' und 'Logistic'. " + lineNo);							
+						try {
+							_activationFunction = ActivationFunction.forName(value);
+						} catch (IllegalArgumentException e) {
+							throw new IllegalStateException(e.getMessage() + " " + lineNo);
 						}
 					} else if(key.compareTo("presentOriginals")==0) {
 						if(value.compareTo("yes")==0) {
@@ -210,6 +483,71 @@ public class NN4PatternRecognition {
 					} else if(key.compareTo("maxErrorsPerSample")==0) {
 						_maxErrorsPerSample = Integer.parseInt(value);
 						if(_maxErrorsPerSample<0||_maxErrorsPerSample>10) throw new IllegalStateException("Anzahl der Fehler pro Zufalls-Pattern unpassend. Zeile: " + lineNo);
+					} else if(key.compareTo("threads")==0) {
+						_numberOfThreads = Integer.parseInt(value);
+						if(_numberOfThreads<1) throw new IllegalStateException("Anzahl der Threads zu gering. Zeile: " + lineNo);
+					} else if(key.compareTo("shards")==0) {
+						_numberOfShards = Integer.parseInt(value);
+						if(_numberOfShards<1) throw new IllegalStateException("Anzahl der Teile zu gering. Zeile: " + lineNo);
+					} else if(key.compareTo("targetError")==0) {
+						double targetError = Double.parseDouble(value);
+						if(targetError<0d) throw new IllegalStateException("'targetError' darf nicht negativ sein. Zeile: " + lineNo);
+						_stoppingCriteria.setTargetError(targetError);
+					} else if(key.compareTo("patience")==0) {
+						_patience = Integer.parseInt(value);
+						if(_patience<0) throw new IllegalStateException("'patience' darf nicht negativ sein. Zeile: " + lineNo);
+					} else if(key.compareTo("minImprovement")==0) {
+						_minImprovement = Double.parseDouble(value);
+						if(_minImprovement<0d) throw new IllegalStateException("'minImprovement' darf nicht negativ sein. Zeile: " + lineNo);
+					} else if(key.compareTo("maxWeightChange")==0) {
+						double maxWeightChange = Double.parseDouble(value);
+						if(maxWeightChange<0d) throw new IllegalStateException("'maxWeightChange' darf nicht negativ sein. Zeile: " + lineNo);
+						_stoppingCriteria.setMaxWeightChange(maxWeightChange);
+					} else if(key.compareTo("trainingLog")==0) {
+						_trainingLogInterval = Integer.parseInt(value);
+						if(_trainingLogInterval<0) throw new IllegalStateException("'trainingLog' darf nicht negativ sein. Zeile: " + lineNo);
+					} else if(key.compareTo("metrics")==0) {
+						_collectMetrics = value.compareTo("yes")==0;
+					} else if(key.compareTo("matchCache")==0) {
+						_matchCacheSize = Integer.parseInt(value);
+						if(_matchCacheSize<0) throw new IllegalStateException("'matchCache' darf nicht negativ sein. Zeile: " + lineNo);
+					} else if(key.compareTo("metricsDump")==0) {
+						_metricsDumpInterval = Integer.parseInt(value);
+						if(_metricsDumpInterval<0) throw new IllegalStateException("'metricsDump' darf nicht negativ sein. Zeile: " + lineNo);
+					} else if(key.compareTo("corpus")==0) {
+						_corpusFile = value;
+					} else if(key.compareTo("loadModel")==0) {
+						_modelToLoad = value;
+					} else if(key.compareTo("saveModel")==0) {
+						_modelToSave = value;
+					} else if(key.compareTo("precision")==0) {
+						if(value.compareTo("double")==0) {
+							_precision = Precision.DOUBLE;
+						} else if(value.compareTo("float")==0) {
+							_precision = Precision.FLOAT;
+						} else {
+							throw new IllegalStateException("Unbekannte Genauigkeit. Möglich sind: 'double' und 'float'. Zeile: " + lineNo);
+						}
+					} else if(key.compareTo("classifier")==0) {
+						if(value.compareTo("network")==0) {
+							_nearestTemplate = false;
+						} else if(value.compareTo("nearest")==0) {
+							_nearestTemplate = true;
+						} else {
+							throw new IllegalStateException("Unbekanntes Erkennungsverfahren. Möglich sind: 'network' und 'nearest'. Zeile: " + lineNo);
+						}
+					} else if(key.compareTo("quantize")==0) {
+						if(value.compareTo("binary")==0) {
+							_quantization = BinaryClassifier.Quantization.BINARY;
+						} else if(value.compareTo("ternary")==0) {
+							_quantization = BinaryClassifier.Quantization.TERNARY;
+						} else {
+							throw new IllegalStateException("Unbekannte Quantisierung. Möglich sind: 'binary' und 'ternary'. Zeile: " + lineNo);
+						}
+					} else if(key.compareTo("validatePrecision")==0) {
+						_validatePrecision = value.compareTo("yes")==0;
+					} else if(key.compareTo("seed")==0) {
+						_seed = Long.parseLong(value);
 					} else if(key.compareTo("mode")==0) {
 						if(value.compareTo("batch")==0) {
 							_batchMode = true;
@@ -229,7 +567,63 @@ public class NN4PatternRecognition {
 		} finally {
 			if(reader!=null) reader.close();
 		}
-		_originalSamples = new PatternSet(patternArray, _randomNumberSource);
+		_stoppingCriteria.setPatience(_patience, _minImprovement);
+		if(_validatePrecision && _modelToLoad!=null) throw new IllegalStateException("'validatePrecision' ist mit 'loadModel' nicht möglich, da beide Netze trainiert werden.");
+		if(_nearestTemplate && (_modelToLoad!=null || _modelToSave!=null || _quantization!=null || _validatePrecision)) throw new IllegalStateException("'loadModel', 'saveModel', 'quantize' und 'validatePrecision' setzen 'classifier=network' voraus.");
+		if(_matchCacheSize>0 && (_nearestTemplate || _numberOfThreads>1)) throw new IllegalStateException("'matchCache' setzt 'classifier=network' und 'threads=1' voraus.");
+		_randomNumberSource = new Random(_seed);
+		if(_corpusFile!=null) {
+			// Die Bitmuster stammen aus einem kompilierten Korpus; Höhe und Breite stehen in dessen Kopf.
+			if(!patternArray.isEmpty()) throw new IllegalStateException("Bitmuster dürfen nicht zusätzlich zu 'corpus' angegeben werden.");
+			_originalSamples = PatternCorpus.load(new File(_corpusFile), _randomNumberSource);
+			if(_originalSamples.size()==0) throw new IllegalStateException("Das Korpus enthält keine Bitmuster: " + _corpusFile);
+			_patternHeight = _originalSamples.get_pattern(0).get_height();
+			_patternWidth  = _originalSamples.get_pattern(0).get_width();
+		} else {
+			_originalSamples = new PatternSet(patternArray, _randomNumberSource);
+		}
+	}
+
+	/**
+	 * Lädt das trainierte Netz aus der Modelldatei und prüft, ob es zur Konfiguration passt.
+	 * @return
+	 */
+	private PatternClassifier loadModel() {
+		PatternClassifier model;
+		try {
+			model = PatternClassifier.load(new File(_modelToLoad));
+		} catch (IOException e) {
+			throw new IllegalStateException("Modell konnte nicht geladen werden: " + e.getMessage(), e);
+		}
+		if(model.get_noOfInputs()!=_numberOfInputNeurons) throw new IllegalStateException("Das Modell passt nicht zur Größe der Bitmuster: " + _modelToLoad);
+		return model;
+	}
+
+	/**
+	 * Schreibt das trainierte Netz in die Modelldatei.
+	 * @param model
+	 */
+	private void saveModel(PatternClassifier model) {
+		try {
+			model.save(new File(_modelToSave));
+		} catch (IOException e) {
+			throw new IllegalStateException("Modell konnte nicht gespeichert werden: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Erzeugt die Kennzahlen der Erkennung, meldet sie per JMX an und startet ggf. die periodische Ausgabe.
+	 * @return
+	 */
+	private MatchMetrics createMetrics() {
+		MatchMetrics metrics = new MatchMetrics();
+		try {
+			System.out.println("Kennzahlen per JMX unter: " + metrics.register("NN4PatternRecognition"));
+		} catch (javax.management.JMException e) {
+			System.out.println("Kennzahlen konnten nicht per JMX angemeldet werden: " + e.getMessage());
+		}
+		if(_metricsDumpInterval>0) metrics.startDump(System.out, _metricsDumpInterval);
+		return metrics;
 	}
 
 }
@@ -0,0 +1,42 @@
+package de.wbongartz.pattern_recognition;
+
+import java.io.PrintStream;
+
+import de.wbongartz.pattern_recognition.nnet.*;
+
+/**
+ * Gibt die Kennzahlen der Trainings-Epochen in einer kompakten Zeile aus.
+ * @author Wolfgang Bongartz
+ */
+public class TrainingLogger implements TrainingListener {
+
+	private final PrintStream _out;
+	private final int         _interval;
+
+	/**
+	 * @param out Ziel der Ausgabe.
+	 * @param interval Nur jede interval-te Epoche wird ausgegeben.
+	 */
+	public TrainingLogger(PrintStream out, int interval) {
+		if(out==null || interval<1) throw new IllegalArgumentException();
+		_out      = out;
+		_interval = interval;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.wbongartz.pattern_recognition.nnet.TrainingListener#epochFinished(de.wbongartz.pattern_recognition.nnet.EpochStatistics)
+	 */
+	@Override
+	public void epochFinished(EpochStatistics statistics) {
+		if(statistics.get_epoch() % _interval != 0) return;
+		_out.printf("Epoche %4d: %8.3f ms, %d Muster (%.0f Muster/s), Fehler %.6f, Gewichtsänderung %.6f, %s%n",
+				statistics.get_epoch(),
+				statistics.get_wallTime() / 1e6d,
+				statistics.get_noOfPatterns(),
+				statistics.get_patternsPerSecond(),
+				statistics.get_error(),
+				statistics.get_deltaNorm(),
+				statistics.get_allocatedBytes()<0 ? "Speicher unbekannt" : (statistics.get_allocatedBytes() / 1024) + " KB angefordert");
+	}
+
+}
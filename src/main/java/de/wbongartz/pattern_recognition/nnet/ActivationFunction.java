@@ -20,6 +20,35 @@ public abstract class ActivationFunction implements RealVectorChangingVisitor {
 		setWeigths(null);
 	}
 
+	/**
+	 * Erzeugt eine Aktivierungsfunktion anhand ihres Namens.
+	 * @param name 'Linear', 'Binary', 'TangensHyperbolicus' oder 'Logistic'.
+	 * @return
+	 * @throws IllegalArgumentException Falls der Name unbekannt ist.
+	 */
+	public static ActivationFunction forName(String name) {
+		if(name==null) throw new IllegalArgumentException();
+		if(name.compareTo("TangensHyperbolicus")==0) {
+			return new ActivationFunction_TangensHyperbolicus();
+		} else if(name.compareTo("Linear")==0) {
+			return new ActivationFunction_Linear();
+		} else if(name.compareTo("Logistic")==0) {
+			return new ActivationFunction_Logistic();
+		} else if(name.compareTo("Binary")==0) {
+			return new ActivationFunction_Binary();
+		}
+		throw new IllegalArgumentException("Unbekannte Aktivierungsfunktion. Möglich sind: 'Linear', 'Binary', 'TangensHyperbolicus' und 'Logistic'.");
+	}
+
+	/**
+	 * Liefert den Namen der Aktivierungsfunktion, unter dem forName() sie wieder erzeugt.
+	 * @return
+	 */
+	public String getName() {
+		String className = getClass().getSimpleName();
+		return className.substring(className.indexOf('_')+1);
+	}
+
 	/* (non-Javadoc)
 	 * @see org.apache.commons.math3.linear.RealVectorChangingVisitor#end()
 	 */
@@ -53,6 +82,22 @@ public abstract class ActivationFunction implements RealVectorChangingVisitor {
 		return retVal;
 	}
 
+	/**
+	 * Berechnet die Aktivierungszustände aller Output-Neuronen auf den primitiven Daten eines Workspace.
+	 * Der Netto-Input aller Output-Neuronen ergibt sich als Summe der Zeilen der Gewichtsmatrix, 
+	 * die zu aktiven Input-Neuronen gehören. Inaktive Input-Neuronen tragen nichts bei und werden übersprungen.
+	 * Die Summationsreihenfolge je Output-Neuron entspricht der von visit(). Es wird kein Speicher angefordert.
+	 * @param weigths Gewichtsmatrix.
+	 * @param workspace Enthält die aktiven Input-Neuronen und nimmt die Aktivierungszustände der Output-Neuronen auf.
+	 */
+	void calculate(WeightMatrix weigths, Workspace workspace) {
+		double[] output = workspace._outputVector;
+		weigths.sumRows(workspace._activeInputs, workspace._noOfActiveInputs, output);
+		for(int o=0; o<output.length; o++) {
+			output[o] = getFunctionResult(output[o]);
+		}
+	}
+
 	/**
 	 * Liefert das Ergebnis der Aktivierungsfunktion für den Netto-Input eines Neurons.
 	 * @param netInput 
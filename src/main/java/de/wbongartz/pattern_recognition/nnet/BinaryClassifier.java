@@ -0,0 +1,180 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.util.*;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Quantisierte Variante eines trainierten Netzes für die Erkennung auf Geräten mit wenig Rechenleistung.
+ * Jedes Gewicht wird durch sein Vorzeichen (BINARY) bzw. durch -1, 0 oder +1 (TERNARY) ersetzt; je Output-Neuron
+ * bleibt ein Skalierungsfaktor. Die Vorzeichen liegen wie die Bitmuster in long-Worten gepackt vor, sodass sich der
+ * Netto-Input eines Output-Neurons aus wenigen Long.bitCount() über UND-verknüpfte Worte ergibt:
+ * Netto-Input = Skalierung * ( Anzahl aktiver Inputs mit Gewicht +1 - Anzahl aktiver Inputs mit Gewicht -1 ).
+ * Da die Input-Neuronen nur die Zustände 0 und 1 annehmen, ist dies genau das Produkt mit der quantisierten Gewichtsmatrix.
+ * Die Klasse ist unveränderlich und kann von beliebig vielen Threads gleichzeitig benutzt werden.
+ * @author Wolfgang Bongartz
+ */
+public final class BinaryClassifier implements Classifier {
+
+	/**
+	 * Art der Quantisierung.
+	 */
+	public enum Quantization {
+		/** Gewichte +1 und -1, Skalierung = Mittelwert der Beträge aller Gewichte des Output-Neurons. */
+		BINARY,
+		/** Gewichte +1, 0 und -1. Beträge unter 0.7 * Mittelwert werden zu 0, Skalierung = Mittelwert der übrigen Beträge. */
+		TERNARY
+	}
+
+	private static final double TERNARY_THRESHOLD = 0.7d; // Schwelle relativ zum mittleren Betrag der Gewichte.
+
+	private final Quantization       _quantization;
+	private final int                _noOfInputs;
+	private final int                _noOfOutputs;
+	private final int                _noOfWords;   // long-Worte je Output-Neuron.
+	private final long[]             _positive;    // Je Output-Neuron _noOfWords Worte: Bit i gesetzt, falls Gewicht(i,o) = +1.
+	private final long[]             _negative;    // Wie _positive für Gewicht -1. Bei BINARY NULL (Komplement von _positive).
+	private final double[]           _scale;
+	private final String[]           _semantic;
+
+	/**
+	 * Quantisiert eine Gewichtsmatrix. Siehe PatternClassifier.quantize().
+	 * @param weigths
+	 * @param semantic Wird kopiert.
+	 * @param quantization
+	 */
+	BinaryClassifier(WeightMatrix weigths, String[] semantic, Quantization quantization) {
+		if(quantization==null) throw new IllegalArgumentException("Keine Quantisierung angegeben!");
+		_quantization       = quantization;
+		_noOfInputs         = weigths._noOfInputs;
+		_noOfOutputs        = weigths._noOfOutputs;
+		_noOfWords          = Pattern.numberOfWords(_noOfInputs);
+		_positive           = new long[_noOfOutputs * _noOfWords];
+		_negative           = (quantization==Quantization.TERNARY) ? new long[_noOfOutputs * _noOfWords] : null;
+		_scale              = new double[_noOfOutputs];
+		_semantic           = Arrays.copyOf(semantic, semantic.length);
+
+		for(int o=0; o<_noOfOutputs; o++) {
+			double meanMagnitude = 0d;
+			for(int i=0; i<_noOfInputs; i++) meanMagnitude += Math.abs(weigths.get(i*_noOfOutputs+o));
+			meanMagnitude /= _noOfInputs;
+
+			double threshold = (quantization==Quantization.TERNARY) ? TERNARY_THRESHOLD * meanMagnitude : 0d;
+			double sum   = 0d;
+			int    count = 0;
+			for(int i=0; i<_noOfInputs; i++) {
+				double weigth = weigths.get(i*_noOfOutputs+o);
+				int    word   = o*_noOfWords + (i>>>6);
+				if(quantization==Quantization.BINARY) {
+					if(weigth>=0d) _positive[word] |= 1L << i;
+					sum += Math.abs(weigth);
+					count++;
+				} else if(Math.abs(weigth)>threshold) {
+					if(weigth>0d) _positive[word] |= 1L << i;
+					else          _negative[word] |= 1L << i;
+					sum += Math.abs(weigth);
+					count++;
+				}
+			}
+			_scale[o] = (count>0) ? sum / count : 0d;
+		}
+	}
+
+	/**
+	 * Liefert die Antwort des Netzes auf ein Bitmuster.
+	 * @param pattern
+	 * @return
+	 * @throws InappropriateDataException
+	 */
+	@Override
+	public String classify(Pattern pattern) throws InappropriateDataException {
+		return _semantic[classifyIndex(pattern)];
+	}
+
+	/**
+	 * Liefert den Index des Output-Neurons, das auf ein Bitmuster am stärksten reagiert.
+	 * Da alle Aktivierungsfunktionen monoton steigen, wird direkt der skalierte Netto-Input verglichen. Gleichstände durch
+	 * Sättigung (z.B. Binary oder TangensHyperbolicus) entfallen dadurch. Bei gleich hohem Netto-Input gewinnt das 
+	 * Output-Neuron mit dem niedrigsten Index. Es wird kein Speicher angefordert.
+	 * @param pattern
+	 * @return Siehe get_semantic(int).
+	 * @throws InappropriateDataException
+	 */
+	@Override
+	public int classifyIndex(Pattern pattern) throws InappropriateDataException {
+		if(pattern==null) throw new IllegalArgumentException();
+		int inputVectorSize = pattern.get_numberOfBits();
+		if( inputVectorSize != _noOfInputs ) throw new InappropriateDataException("Größe des Bitmusters ist für das Netz nicht passend! Das Netz hat " + _noOfInputs + " Eingangsneuronen. Das Bitmuster besteht aber aus " + inputVectorSize + " Bits.");
+
+		int noOfActiveInputs = 0;
+		if(_negative==null) {
+			for(int w=0; w<_noOfWords; w++) noOfActiveInputs += Long.bitCount(pattern.get_word(w));
+		}
+
+		double maxValue = Double.NEGATIVE_INFINITY;
+		int    retVal   = -1;
+		for(int o=0; o<_noOfOutputs; o++) {
+			int first = o * _noOfWords;
+			int score;
+			if(_negative==null) {
+				// Jedes aktive Input-Neuron trägt +1 oder -1 bei.
+				int positive = 0;
+				for(int w=0; w<_noOfWords; w++) positive += Long.bitCount(pattern.get_word(w) & _positive[first+w]);
+				score = 2*positive - noOfActiveInputs;
+			} else {
+				score = 0;
+				for(int w=0; w<_noOfWords; w++) {
+					long word = pattern.get_word(w);
+					score += Long.bitCount(word & _positive[first+w]) - Long.bitCount(word & _negative[first+w]);
+				}
+			}
+			double value = _scale[o] * score;
+			if(value>maxValue) {
+				maxValue = value;
+				retVal   = o;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Liefert die semantische Bedeutung eines Output-Neurons.
+	 * @param index
+	 * @return
+	 */
+	@Override
+	public String get_semantic(int index) {
+		return _semantic[index];
+	}
+
+	/**
+	 * @return Art der Quantisierung.
+	 */
+	public Quantization get_quantization() {
+		return _quantization;
+	}
+
+	/**
+	 * @return Anzahl der Input-Neuronen.
+	 */
+	public int get_noOfInputs() {
+		return _noOfInputs;
+	}
+
+	/**
+	 * @return Anzahl der Output-Neuronen.
+	 */
+	@Override
+	public int get_noOfOutputs() {
+		return _noOfOutputs;
+	}
+
+	/**
+	 * @return Speicherbedarf der quantisierten Gewichte und Skalierungsfaktoren in Byte.
+	 */
+	public long get_sizeInBytes() {
+		long words = _positive.length + ( (_negative!=null) ? _negative.length : 0 );
+		return words * Long.BYTES + (long) _scale.length * Double.BYTES;
+	}
+
+}
@@ -0,0 +1,41 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Gemeinsame Schnittstelle aller Verfahren, die ein Bitmuster einer Kategorie zuordnen
+ * (PatternClassifier, BinaryClassifier und NearestTemplateClassifier).
+ * Implementierungen sind unveränderlich und können von beliebig vielen Threads gleichzeitig benutzt werden.
+ * @author Wolfgang Bongartz
+ */
+public interface Classifier {
+
+	/**
+	 * Liefert die Antwort auf ein Bitmuster.
+	 * @param pattern
+	 * @return
+	 * @throws InappropriateDataException
+	 */
+	String classify(Pattern pattern) throws InappropriateDataException;
+
+	/**
+	 * Liefert den Index der Kategorie, der ein Bitmuster zugeordnet wird.
+	 * @param pattern
+	 * @return Siehe get_semantic(int).
+	 * @throws InappropriateDataException
+	 */
+	int classifyIndex(Pattern pattern) throws InappropriateDataException;
+
+	/**
+	 * Liefert die semantische Bedeutung einer Kategorie.
+	 * @param index
+	 * @return
+	 */
+	String get_semantic(int index);
+
+	/**
+	 * @return Anzahl der Kategorien (bei den Netzen die Anzahl der Output-Neuronen).
+	 */
+	int get_noOfOutputs();
+
+}
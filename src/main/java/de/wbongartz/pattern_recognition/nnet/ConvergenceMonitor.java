@@ -0,0 +1,128 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Verfolgt den Verlauf eines Trainings, prüft nach jeder Epoche die StoppingCriteria und benachrichtigt die TrainingListener.
+ * Die Gewichtsmatrix wird nur kopiert, wenn das Kriterium für die Änderung der Gewichte eingeschaltet ist oder
+ * TrainingListener angemeldet sind. Ohne TrainingListener werden weder Zeit noch Speicher gemessen.
+ * @author Wolfgang Bongartz
+ */
+final class ConvergenceMonitor {
+
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+	private final StoppingCriteria       _criteria;
+	private final List<TrainingListener> _listeners;
+	private final WeightMatrix           _weigths;
+	private final double[]               _epochStartWeigths; // NULL, falls die Änderung der Gewichte nicht benötigt wird.
+
+	private int                       _noOfEpochs               = 0;
+	private double                    _error                    = Double.NaN;
+	private double                    _bestError                = Double.POSITIVE_INFINITY;
+	private int                       _epochsWithoutImprovement = 0;
+	private TrainingResult.StopReason _stopReason               = TrainingResult.StopReason.EPOCHS;
+	private long                      _epochStartTime;
+	private long                      _epochStartBytes;
+
+	/**
+	 * @param criteria Falls NULL, läuft das Training über alle Epochen.
+	 * @param listeners Zu benachrichtigende TrainingListener. Darf leer sein.
+	 * @param weigths Gewichtsmatrix des Netzes.
+	 */
+	ConvergenceMonitor(StoppingCriteria criteria, List<TrainingListener> listeners, WeightMatrix weigths) {
+		_criteria          = criteria;
+		_listeners         = listeners;
+		_weigths           = weigths;
+		boolean needsDelta = !listeners.isEmpty() || (criteria!=null && criteria.get_maxWeightChange()>=0d);
+		_epochStartWeigths = needsDelta ? new double[weigths.size()] : null;
+	}
+
+	/**
+	 * Muss vor jeder Epoche aufgerufen werden.
+	 */
+	void startEpoch() {
+		if(_epochStartWeigths!=null) _weigths.copyTo(_epochStartWeigths);
+		if(!_listeners.isEmpty()) {
+			_epochStartBytes = allocatedBytes();
+			_epochStartTime  = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Muss nach jeder Epoche aufgerufen werden, nachdem die Gewichte angepasst wurden.
+	 * @param error Mittlerer quadratischer Fehler der Epoche.
+	 * @param noOfPatterns Anzahl der in der Epoche gelernten Bitmuster.
+	 * @return TRUE, falls das Training beendet werden soll.
+	 */
+	boolean endEpoch(double error, int noOfPatterns) {
+		_noOfEpochs++;
+		_error = error;
+		double deltaNorm = (_epochStartWeigths!=null) ? deltaNorm() : Double.NaN;
+
+		if(!_listeners.isEmpty()) {
+			long wallTime = System.nanoTime() - _epochStartTime;
+			long bytes    = (THREAD_BEAN!=null) ? allocatedBytes() - _epochStartBytes : -1L;
+			EpochStatistics statistics = new EpochStatistics(_noOfEpochs, wallTime, noOfPatterns, error, deltaNorm, bytes);
+			for(TrainingListener listener: _listeners) listener.epochFinished(statistics);
+		}
+
+		if(_criteria==null) return false;
+
+		if(error<=_criteria.get_targetError()) {
+			_stopReason = TrainingResult.StopReason.TARGET_ERROR;
+			return true;
+		}
+
+		if(_criteria.get_patience()>0) {
+			// Der Bezugswert rückt nur bei einer Verbesserung um mehr als minImprovement vor. Sonst könnten viele kleine 
+			// Verbesserungen den Abbruch verhindern, obwohl der Fehler insgesamt kaum noch sinkt.
+			if(error < _bestError - _criteria.get_minImprovement()) {
+				_bestError = error;
+				_epochsWithoutImprovement = 0;
+			} else if(++_epochsWithoutImprovement >= _criteria.get_patience()) {
+				_stopReason = TrainingResult.StopReason.NO_IMPROVEMENT;
+				return true;
+			}
+		}
+
+		if(deltaNorm<=_criteria.get_maxWeightChange()) {
+			_stopReason = TrainingResult.StopReason.WEIGHTS_CONVERGED;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return Ergebnis des bisherigen Trainings.
+	 */
+	TrainingResult getResult() {
+		return new TrainingResult(_noOfEpochs, _error, _stopReason);
+	}
+
+	/**
+	 * @return Euklidische Norm der Änderung der Gewichtsmatrix seit startEpoch().
+	 */
+	private double deltaNorm() {
+		return _weigths.distanceTo(_epochStartWeigths);
+	}
+
+	private static long allocatedBytes() {
+		return (THREAD_BEAN!=null) ? THREAD_BEAN.getCurrentThreadAllocatedBytes() : 0L;
+	}
+
+	/**
+	 * @return Die ThreadMXBean der JVM, falls sie den angeforderten Speicher je Thread messen kann. Sonst NULL.
+	 */
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) return sunBean;
+		}
+		return null;
+	}
+
+}
@@ -47,10 +47,68 @@ public class DeltaRule implements RealVectorPreservingVisitor {
 	@Override
 	public void visit(int index, double value) {
 		double delta = ( _targetVector.getEntry(index) - value ) * _epsilon;
-		RealVector newDeltaWeigths = _inputVector.mapMultiply(delta);
-		RealVector currentDeltaWeights = _deltaWeigths.getColumnVector(index);
-		currentDeltaWeights = currentDeltaWeights.add(newDeltaWeigths);
-		_deltaWeigths.setColumnVector(index, currentDeltaWeights);
+		double[]   input        = _inputVector.getDataRef();
+		double[][] deltaWeigths = _deltaWeigths.getDataRef();
+		for(int i=0; i<input.length; i++) {
+			deltaWeigths[i][index] += input[i] * delta;
+		}
+	}
+
+	/**
+	 * Primitive Variante der Delta-Regel für binäre Input-Neuronen.
+	 * Addiert das äußere Produkt epsilon * (Soll - Ist) x Input direkt auf den Delta-Puffer. 
+	 * Da nur aktive Input-Neuronen (Zustand 1) beitragen, werden ausschließlich deren Zeilen verändert.
+	 * Es wird kein Speicher angefordert.
+	 * @param deltaWeigths Delta-Puffer, zeilenweise abgelegt (Input i, Output o an Position i*noOfOutputs+o).
+	 * @param noOfOutputs Anzahl der Output-Neuronen.
+	 * @param activeInputs Indizes der aktiven Input-Neuronen.
+	 * @param noOfActiveInputs Anzahl der gültigen Einträge in activeInputs.
+	 * @param outputVector Aktivierungszustände der Output-Neuronen.
+	 * @param targetVector Gewünschte Aktivierungszustände der Output-Neuronen.
+	 * @param epsilon Lernrate.
+	 * @param errorVector Arbeitsspeicher mit wenigstens noOfOutputs Einträgen. Enthält anschließend epsilon * (Soll - Ist).
+	 */
+	static void apply(double[] deltaWeigths, int noOfOutputs, int[] activeInputs, int noOfActiveInputs, 
+			double[] outputVector, double[] targetVector, double epsilon, double[] errorVector) {
+		for(int o=0; o<noOfOutputs; o++) {
+			errorVector[o] = ( targetVector[o] - outputVector[o] ) * epsilon;
+		}
+		if(WeightMatrix.VECTORIZED) {
+			VectorKernels.addToRows(deltaWeigths, noOfOutputs, activeInputs, noOfActiveInputs, errorVector);
+			return;
+		}
+		for(int k=0; k<noOfActiveInputs; k++) {
+			int row = activeInputs[k] * noOfOutputs;
+			for(int o=0; o<noOfOutputs; o++) {
+				deltaWeigths[row+o] += errorVector[o];
+			}
+		}
+	}
+
+	/**
+	 * Delta-Regel für eine Gruppe von Bitmustern (Mini-Batch-Learning): Addiert Zeile i des Matrixprodukts X^T x E für ein 
+	 * Input-Neuron i auf die Zeile i der Deltas. Da die Input-Neuronen nur die Zustände 0 und 1 annehmen, ist das die Summe 
+	 * der Fehler-Zeilen aller Bitmuster, in denen das Input-Neuron aktiv ist. Die Fehler werden in derselben Reihenfolge 
+	 * aufsummiert wie von apply().
+	 * @param errors Matrix E, je Bitmuster eine Zeile mit epsilon * (Soll - Ist).
+	 * @param noOfOutputs Anzahl der Output-Neuronen.
+	 * @param patterns Zeilen von E, d.h. die Bitmuster, in denen das Input-Neuron aktiv ist.
+	 * @param from Erster gültiger Eintrag in patterns (einschließlich).
+	 * @param to Letzter gültiger Eintrag in patterns (ausschließlich).
+	 * @param deltaWeigths Zeilenweise abgelegte Deltas.
+	 * @param offset Index des ersten Eintrags der Zeile i in deltaWeigths.
+	 */
+	static void sumErrors(double[] errors, int noOfOutputs, int[] patterns, int from, int to, double[] deltaWeigths, int offset) {
+		if(WeightMatrix.VECTORIZED) {
+			VectorKernels.sumRows(errors, noOfOutputs, patterns, from, to, deltaWeigths, offset);
+			return;
+		}
+		for(int k=from; k<to; k++) {
+			int row = patterns[k] * noOfOutputs;
+			for(int o=0; o<noOfOutputs; o++) {
+				deltaWeigths[offset+o] += errors[row+o];
+			}
+		}
 	}
 
 }
@@ -0,0 +1,75 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * Kennzahlen einer Trainings-Epoche. Siehe TrainingListener.
+ * @author Wolfgang Bongartz
+ */
+public final class EpochStatistics {
+
+	private final int    _epoch;
+	private final long   _wallTime;
+	private final int    _noOfPatterns;
+	private final double _error;
+	private final double _deltaNorm;
+	private final long   _allocatedBytes;
+
+	EpochStatistics(int epoch, long wallTime, int noOfPatterns, double error, double deltaNorm, long allocatedBytes) {
+		_epoch          = epoch;
+		_wallTime       = wallTime;
+		_noOfPatterns   = noOfPatterns;
+		_error          = error;
+		_deltaNorm      = deltaNorm;
+		_allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return Nummer der Epoche, beginnend mit 1.
+	 */
+	public int get_epoch() {
+		return _epoch;
+	}
+
+	/**
+	 * @return Dauer der Epoche in Nanosekunden.
+	 */
+	public long get_wallTime() {
+		return _wallTime;
+	}
+
+	/**
+	 * @return Anzahl der in der Epoche gelernten Bitmuster.
+	 */
+	public int get_noOfPatterns() {
+		return _noOfPatterns;
+	}
+
+	/**
+	 * @return Gelernte Bitmuster pro Sekunde.
+	 */
+	public double get_patternsPerSecond() {
+		return _wallTime>0 ? _noOfPatterns * 1e9d / _wallTime : Double.NaN;
+	}
+
+	/**
+	 * @return Mittlerer quadratischer Fehler der Output-Neuronen.
+	 */
+	public double get_error() {
+		return _error;
+	}
+
+	/**
+	 * @return Euklidische Norm der Änderung der Gewichtsmatrix in dieser Epoche.
+	 */
+	public double get_deltaNorm() {
+		return _deltaNorm;
+	}
+
+	/**
+	 * @return Vom trainierenden Thread in dieser Epoche angeforderter Speicher in Byte. -1, falls die JVM das nicht misst.
+	 * Speicher, den andere Threads (zerlegtes oder asynchrones Training) anfordern, ist nicht enthalten.
+	 */
+	public long get_allocatedBytes() {
+		return _allocatedBytes;
+	}
+
+}
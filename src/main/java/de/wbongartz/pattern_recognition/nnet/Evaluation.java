@@ -0,0 +1,127 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Lässt einen Classifier alle Samples eines Streams erkennen und zählt die Fehler (Batch-Modus von NN4PatternRecognition).
+ * Mit mehreren Threads wird der Stream parallel in einem eigenen ForkJoinPool ausgewertet, mit einem PatternAssociator
+ * blockweise über matchAll(), sonst der Reihe nach. Alle Varianten liefern für dieselben Samples dieselben Zählerstände.
+ * @author Wolfgang Bongartz
+ */
+public final class Evaluation {
+
+	/** Anzahl der Samples, die ein PatternAssociator gemeinsam erkennt. */
+	public static final int BLOCK_SIZE = 4096;
+
+	private final int _noOfSamples;
+	private final int _noOfErrors;
+
+	private Evaluation(int noOfSamples, int noOfErrors) {
+		_noOfSamples = noOfSamples;
+		_noOfErrors  = noOfErrors;
+	}
+
+	/**
+	 * Wertet alle Samples aus.
+	 * @param classifier
+	 * @param labelOfOutput Label-Id der Samples zu jedem Output-Neuron des Classifiers.
+	 * @param samples Samples mit der Label-Id ihrer Vorlage, z.B. aus PatternSet.streamRandomizedWithLabels().
+	 * @param numberOfThreads Bei mehr als einem Thread wird der Stream parallel ausgewertet.
+	 * @param pa Netz, aus dem der Classifier stammt. Mit einem Thread werden die Samples dann blockweise erkannt. Darf NULL sein.
+	 * @param metrics Erfasst die Ergebnisse. Darf NULL sein.
+	 * @return
+	 * @throws NeuralNetworkIsUntrainedException
+	 * @throws InappropriateDataException
+	 */
+	public static Evaluation evaluate(Classifier classifier, int[] labelOfOutput, Stream<LabeledPattern> samples, int numberOfThreads, PatternAssociator pa, MatchMetrics metrics) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		if(classifier==null || labelOfOutput==null || samples==null || numberOfThreads<1) throw new IllegalArgumentException();
+
+		if( numberOfThreads>1 ) {
+			ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+			try {
+				// Ein paralleler Stream verteilt seine Arbeit auf den Pool, in dem er gestartet wurde.
+				long[] counters = pool.submit(() -> samples.parallel().collect(() -> new long[2],
+						(counter, sample) -> {
+							counter[0]++;
+							if(!isRecognized(classifier, labelOfOutput, sample, metrics)) counter[1]++;
+						},
+						(left, right) -> {
+							left[0] += right[0];
+							left[1] += right[1];
+						})).get();
+				return new Evaluation((int) counters[0], (int) counters[1]);
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("Parallele Erkennung fehlgeschlagen: " + e.getMessage(), e);
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		int errorCounter  = 0;
+		int sampleCounter = 0;
+		Iterator<LabeledPattern> iter = samples.iterator();
+		if( pa!=null ) {
+			// Die Samples werden blockweise gesammelt und gemeinsam erkannt.
+			ArrayList<Pattern> block = new ArrayList<Pattern>(BLOCK_SIZE);
+			int[] labels = new int[BLOCK_SIZE];
+			while(iter.hasNext()) {
+				block.clear();
+				while(iter.hasNext() && block.size()<BLOCK_SIZE) {
+					LabeledPattern sample = iter.next();
+					labels[block.size()] = sample.get_labelId();
+					block.add(sample.get_pattern());
+				}
+				int[] answers = pa.matchAll(block);
+				for(int i=0; i<answers.length; i++) {
+					boolean correct = labelOfOutput[answers[i]]==labels[i];
+					if(metrics!=null) metrics.recordOutcome(correct);
+					if(!correct) errorCounter++;
+					sampleCounter++;
+				}
+			}
+		} else {
+			while(iter.hasNext()) {
+				if(!isRecognized(classifier, labelOfOutput, iter.next(), metrics)) errorCounter++;
+				sampleCounter++;
+			}
+		}
+		return new Evaluation(sampleCounter, errorCounter);
+	}
+
+	/**
+	 * Prüft, ob ein Classifier ein Bitmuster korrekt erkennt.
+	 * @param classifier
+	 * @param labelOfOutput Label-Id der Samples zu jedem Output-Neuron.
+	 * @param sample Sample mit der Label-Id seiner Vorlage.
+	 * @param metrics Erfasst das Ergebnis. Darf NULL sein.
+	 * @return
+	 */
+	private static boolean isRecognized(Classifier classifier, int[] labelOfOutput, LabeledPattern sample, MatchMetrics metrics) {
+		try {
+			boolean correct = labelOfOutput[classifier.classifyIndex(sample.get_pattern())]==sample.get_labelId();
+			if(metrics!=null) metrics.recordOutcome(correct);
+			return correct;
+		} catch (InappropriateDataException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return Anzahl der ausgewerteten Samples.
+	 */
+	public int get_noOfSamples() {
+		return _noOfSamples;
+	}
+
+	/**
+	 * @return Anzahl der Samples, die nicht korrekt erkannt wurden.
+	 */
+	public int get_noOfErrors() {
+		return _noOfErrors;
+	}
+
+}
@@ -0,0 +1,220 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.util.*;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Ergebnis-Cache eines PatternAssociators: Merkt sich zu bereits erkannten Bitmustern den Index des Output-Neurons.
+ * Bei wenigen Fehlern je Zufalls-Bitmuster kommen dieselben Bitmuster häufig mehrfach vor; für diese entfällt dann die Berechnung der Netto-Inputs.
+ * <p>
+ * Schlüssel sind nur die Bits (siehe Pattern.bitsHashCode()), nicht der Name. Die Bits werden kopiert, spätere Änderungen
+ * am Bitmuster wirken sich daher nicht aus. Ist der Cache voll, wird nach dem CLOCK-Verfahren verdrängt: Ein Zeiger läuft
+ * reihum über die Einträge; Einträge, die seit dem letzten Durchlauf getroffen wurden, bekommen eine zweite Chance.
+ * Alle Einträge liegen in vorab angelegten Arrays, Abfragen und Einfügen fordern keinen Speicher an.
+ * <p>
+ * Sobald sich die Gewichte des Netzes ändern, wird der Cache geleert (siehe validate()).
+ * Wie der PatternAssociator selbst ist die Klasse nicht für die gleichzeitige Benutzung durch mehrere Threads vorgesehen.
+ * @author Wolfgang Bongartz
+ */
+public final class MatchCache {
+
+	private final int       _capacity;
+	private final int       _noOfBits;    // Nur Bitmuster dieser Größe werden aufgenommen.
+	private final int       _noOfWords;
+	private final long[]    _bits;        // Je Eintrag _noOfWords Worte.
+	private final int[]     _hash;
+	private final int[]     _answer;
+	private final boolean[] _referenced;  // Seit dem letzten Durchlauf des Zeigers getroffen.
+	private final int[]     _next;        // Nächster Eintrag im selben Fach, -1=Ende.
+	private final int[]     _buckets;     // Erster Eintrag je Fach, -1=leer.
+	private final int       _mask;
+	private int             _size;
+	private int             _hand;        // Zeiger des CLOCK-Verfahrens.
+	private long            _version = -1L; // Stand der Gewichte, zu dem die Einträge passen.
+
+	private long _hits;
+	private long _misses;
+	private long _evictions;
+	private long _invalidations;
+
+	/**
+	 * @param capacity Höchstzahl der Einträge.
+	 * @param noOfBits Größe der Bitmuster (Anzahl der Input-Neuronen).
+	 */
+	MatchCache(int capacity, int noOfBits) {
+		if(capacity<1) throw new IllegalArgumentException("Der Cache muss wenigstens einen Eintrag aufnehmen können!");
+		_capacity   = capacity;
+		_noOfBits   = noOfBits;
+		_noOfWords  = Pattern.numberOfWords(noOfBits);
+		_bits       = new long[capacity * _noOfWords];
+		_hash       = new int[capacity];
+		_answer     = new int[capacity];
+		_referenced = new boolean[capacity];
+		_next       = new int[capacity];
+		_buckets    = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+		_mask       = _buckets.length - 1;
+		Arrays.fill(_buckets, -1);
+	}
+
+	/**
+	 * Leert den Cache, falls sich die Gewichte seit dem letzten Aufruf geändert haben.
+	 * @param version Änderungszähler der Gewichte.
+	 */
+	void validate(long version) {
+		if(version==_version) return;
+		if(_size>0) {
+			clear();
+			_invalidations++;
+		}
+		_version = version;
+	}
+
+	/**
+	 * Sucht das Ergebnis zu einem Bitmuster.
+	 * @param pattern
+	 * @return Index des Output-Neurons oder -1, falls das Bitmuster nicht im Cache liegt.
+	 */
+	int get(Pattern pattern) {
+		if(pattern.get_numberOfBits()!=_noOfBits) return -1;
+		int hash = pattern.bitsHashCode();
+		for(int entry=_buckets[hash & _mask]; entry>=0; entry=_next[entry]) {
+			if(_hash[entry]==hash && sameBits(entry, pattern)) {
+				_referenced[entry] = true;
+				_hits++;
+				return _answer[entry];
+			}
+		}
+		_misses++;
+		return -1;
+	}
+
+	/**
+	 * Nimmt das Ergebnis zu einem Bitmuster auf. Liegen dieselben Bits bereits im Cache (z.B. weil ein Block von matchAll() 
+	 * dasselbe Bitmuster mehrfach enthält), wird der vorhandene Eintrag aktualisiert statt ein zweiter angelegt.
+	 * @param pattern
+	 * @param answer Index des Output-Neurons.
+	 */
+	void put(Pattern pattern, int answer) {
+		if(pattern.get_numberOfBits()!=_noOfBits) return;
+		int hash = pattern.bitsHashCode();
+		for(int entry=_buckets[hash & _mask]; entry>=0; entry=_next[entry]) {
+			if(_hash[entry]==hash && sameBits(entry, pattern)) {
+				_answer[entry] = answer;
+				return;
+			}
+		}
+
+		int entry;
+		if(_size<_capacity) {
+			entry = _size++;
+		} else {
+			while(_referenced[_hand]) {
+				_referenced[_hand] = false;
+				_hand = (_hand+1) % _capacity;
+			}
+			entry = _hand;
+			_hand = (_hand+1) % _capacity;
+			unlink(entry);
+			_evictions++;
+		}
+
+		int first = entry * _noOfWords;
+		for(int w=0; w<_noOfWords; w++) _bits[first+w] = pattern.get_word(w);
+		_hash[entry]       = hash;
+		_answer[entry]     = answer;
+		_referenced[entry] = false;
+		_next[entry]       = _buckets[hash & _mask];
+		_buckets[hash & _mask] = entry;
+	}
+
+	private boolean sameBits(int entry, Pattern pattern) {
+		int first = entry * _noOfWords;
+		for(int w=0; w<_noOfWords; w++) {
+			if(_bits[first+w]!=pattern.get_word(w)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Entfernt einen Eintrag aus seinem Fach.
+	 * @param entry
+	 */
+	private void unlink(int entry) {
+		int bucket = _hash[entry] & _mask;
+		if(_buckets[bucket]==entry) {
+			_buckets[bucket] = _next[entry];
+			return;
+		}
+		int previous = _buckets[bucket];
+		while(_next[previous]!=entry) previous = _next[previous];
+		_next[previous] = _next[entry];
+	}
+
+	/**
+	 * Entfernt alle Einträge. Die Zähler bleiben erhalten.
+	 */
+	public void clear() {
+		Arrays.fill(_buckets, -1);
+		Arrays.fill(_referenced, false);
+		_size = 0;
+		_hand = 0;
+	}
+
+	/**
+	 * @return Höchstzahl der Einträge.
+	 */
+	public int get_capacity() {
+		return _capacity;
+	}
+
+	/**
+	 * @return Aktuelle Anzahl der Einträge.
+	 */
+	public int get_size() {
+		return _size;
+	}
+
+	/**
+	 * @return Anzahl der Abfragen, die aus dem Cache beantwortet wurden.
+	 */
+	public long get_hits() {
+		return _hits;
+	}
+
+	/**
+	 * @return Anzahl der Abfragen, für die das Netz rechnen musste.
+	 */
+	public long get_misses() {
+		return _misses;
+	}
+
+	/**
+	 * @return Anteil der Treffer an allen Abfragen (0..1).
+	 */
+	public double get_hitRate() {
+		long total = _hits + _misses;
+		return (total>0) ? (double) _hits / total : 0d;
+	}
+
+	/**
+	 * @return Anzahl der Einträge, die verdrängt wurden, weil der Cache voll war.
+	 */
+	public long get_evictions() {
+		return _evictions;
+	}
+
+	/**
+	 * @return Wie oft der Cache geleert wurde, weil sich die Gewichte geändert haben.
+	 */
+	public long get_invalidations() {
+		return _invalidations;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Ergebnis-Cache: %d Treffer, %d Fehlschläge (Trefferquote %.1f%%), %d von %d Einträgen belegt, %d verdrängt, %d-mal geleert.",
+				_hits, _misses, get_hitRate() * 100d, _size, _capacity, _evictions, _invalidations);
+	}
+
+}
@@ -0,0 +1,233 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.*;
+
+/**
+ * Kennzahlen der Erkennung: Latenz-Histogramm, Durchsatz und Fehlerzähler.
+ * Das Histogramm ist log-linear aufgebaut: Jede Zweierpotenz ist in SUB_BUCKETS gleich breite Fächer geteilt, 
+ * der relative Fehler eines Perzentils liegt daher unter 1/SUB_BUCKETS. Alle Zähler sind LongAdder, die 
+ * gleichzeitige Schreibzugriffe auf mehrere Zellen verteilen; das Erfassen kommt ohne Sperren aus.
+ * Die Perzentile werden beim Auslesen aus den Fächern berechnet und sind bei gleichzeitigem Schreiben nur näherungsweise konsistent.
+ * 
+ * Ein PatternAssociator bzw. PatternClassifier erfasst nur, wenn ihm mit setMetrics() bzw. freeze() ein MatchMetrics-Objekt übergeben wurde.
+ * @author Wolfgang Bongartz
+ */
+public final class MatchMetrics implements MatchMetricsMBean {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+	private static final int NO_OF_BUCKETS   = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final LongAdder[] _buckets = new LongAdder[NO_OF_BUCKETS];
+	private final LongAdder   _count   = new LongAdder();
+	private final LongAdder   _sum     = new LongAdder();
+	private final LongAdder   _failures = new LongAdder();
+	private final LongAdder   _outcomes = new LongAdder();
+	private final LongAdder   _errors   = new LongAdder();
+	private volatile long     _startTime;
+
+	private ScheduledExecutorService _dumpExecutor = null;
+
+	public MatchMetrics() {
+		for(int i=0; i<_buckets.length; i++) _buckets[i] = new LongAdder();
+		_startTime = System.nanoTime();
+	}
+
+	/**
+	 * Erfasst eine Erkennung.
+	 * @param latency Dauer in Nanosekunden.
+	 */
+	public void recordMatch(long latency) {
+		_buckets[bucketIndex(latency)].increment();
+		_count.increment();
+		_sum.add(latency);
+	}
+
+	/**
+	 * Erfasst mehrere gemeinsam durchgeführte Erkennungen (z.B. PatternAssociator.matchAll()).
+	 * Jede Erkennung geht mit der mittleren Dauer in das Histogramm ein.
+	 * @param count Anzahl der Erkennungen.
+	 * @param latency Gesamtdauer in Nanosekunden.
+	 */
+	public void recordMatches(int count, long latency) {
+		if(count<1) return;
+		_buckets[bucketIndex(latency / count)].add(count);
+		_count.add(count);
+		_sum.add(latency);
+	}
+
+	/**
+	 * Erfasst eine Erkennung, die mit einer Exception abgebrochen wurde.
+	 */
+	public void recordFailure() {
+		_failures.increment();
+	}
+
+	/**
+	 * Erfasst, ob ein Bitmuster richtig erkannt wurde. Nur möglich, wenn die korrekte Antwort bekannt ist.
+	 * @param correct
+	 */
+	public void recordOutcome(boolean correct) {
+		_outcomes.increment();
+		if(!correct) _errors.increment();
+	}
+
+	/**
+	 * Liefert das Fach für eine Dauer. Werte unter SUB_BUCKETS erhalten je ein eigenes Fach.
+	 * @param value
+	 * @return
+	 */
+	static int bucketIndex(long value) {
+		if(value<SUB_BUCKETS) return (int) Math.max(value, 0L);
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift    = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ( (value >>> shift) & (SUB_BUCKETS-1) );
+	}
+
+	/**
+	 * Liefert die obere Grenze eines Fachs.
+	 * @param index
+	 * @return
+	 */
+	static long bucketUpperBound(int index) {
+		if(index<SUB_BUCKETS) return index;
+		int shift = index / SUB_BUCKETS - 1;
+		if(shift>=64-SUB_BUCKET_BITS-1) return Long.MAX_VALUE;
+		long base = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return base + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param quantile Zwischen 0 und 1.
+	 * @return Obere Grenze des Fachs, in dem das Quantil liegt. 0, falls nichts erfasst wurde.
+	 */
+	public long getPercentile(double quantile) {
+		if(quantile<0d || quantile>1d) throw new IllegalArgumentException();
+		long[] counts = new long[NO_OF_BUCKETS];
+		long   total  = 0;
+		for(int i=0; i<counts.length; i++) {
+			counts[i] = _buckets[i].sum();
+			total    += counts[i];
+		}
+		if(total==0) return 0L;
+		long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for(int i=0; i<counts.length; i++) {
+			seen += counts[i];
+			if(seen>=rank) return bucketUpperBound(i);
+		}
+		return bucketUpperBound(counts.length-1);
+	}
+
+	@Override
+	public long getMatchCount() {
+		return _count.sum();
+	}
+
+	@Override
+	public double getThroughput() {
+		long elapsed = System.nanoTime() - _startTime;
+		return elapsed>0 ? _count.sum() * 1e9d / elapsed : 0d;
+	}
+
+	@Override
+	public long getFailureCount() {
+		return _failures.sum();
+	}
+
+	@Override
+	public double getErrorRate() {
+		long outcomes = _outcomes.sum();
+		return outcomes>0 ? (double) _errors.sum() / outcomes : 0d;
+	}
+
+	@Override
+	public double getMeanLatency() {
+		long count = _count.sum();
+		return count>0 ? (double) _sum.sum() / count : 0d;
+	}
+
+	@Override
+	public long getP50Latency() {
+		return getPercentile(0.5d);
+	}
+
+	@Override
+	public long getP99Latency() {
+		return getPercentile(0.99d);
+	}
+
+	@Override
+	public long getP999Latency() {
+		return getPercentile(0.999d);
+	}
+
+	@Override
+	public long getMaxLatency() {
+		return getPercentile(1d);
+	}
+
+	@Override
+	public void reset() {
+		for(LongAdder bucket: _buckets) bucket.reset();
+		_count.reset();
+		_sum.reset();
+		_failures.reset();
+		_outcomes.reset();
+		_errors.reset();
+		_startTime = System.nanoTime();
+	}
+
+	/**
+	 * Meldet die Kennzahlen beim MBeanServer der JVM an.
+	 * @param name Wird als Schlüssel 'name' in den ObjectName übernommen.
+	 * @return Der ObjectName, unter dem die Kennzahlen angemeldet wurden.
+	 * @throws JMException
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("de.wbongartz.pattern_recognition:type=MatchMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Gibt die Kennzahlen periodisch aus. Die Ausgabe läuft in einem Daemon-Thread.
+	 * @param out
+	 * @param period Abstand der Ausgaben in Sekunden.
+	 */
+	public synchronized void startDump(PrintStream out, long period) {
+		if(out==null || period<1) throw new IllegalArgumentException();
+		stopDump();
+		_dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "MatchMetrics-Dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		_dumpExecutor.scheduleAtFixedRate(() -> out.println(this), period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Beendet die periodische Ausgabe.
+	 */
+	public synchronized void stopDump() {
+		if(_dumpExecutor!=null) _dumpExecutor.shutdownNow();
+		_dumpExecutor = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("Erkennungen: %d (%.0f/s), Latenz [µs] Mittel %.2f, p50 %.2f, p99 %.2f, p999 %.2f, max %.2f, Abbrüche: %d, Fehlerrate: %.4f",
+				getMatchCount(), getThroughput(), getMeanLatency() / 1e3d,
+				getP50Latency() / 1e3d, getP99Latency() / 1e3d, getP999Latency() / 1e3d, getMaxLatency() / 1e3d,
+				getFailureCount(), getErrorRate());
+	}
+
+}
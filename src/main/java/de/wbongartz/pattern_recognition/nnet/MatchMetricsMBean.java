@@ -0,0 +1,44 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * JMX-Schnittstelle der MatchMetrics. Alle Zeiten in Nanosekunden.
+ * @author Wolfgang Bongartz
+ */
+public interface MatchMetricsMBean {
+
+	/**
+	 * @return Anzahl der erfassten Erkennungen.
+	 */
+	long getMatchCount();
+
+	/**
+	 * @return Erkennungen pro Sekunde seit dem Start bzw. dem letzten reset().
+	 */
+	double getThroughput();
+
+	/**
+	 * @return Anzahl der Erkennungen, die mit einer Exception abgebrochen wurden.
+	 */
+	long getFailureCount();
+
+	/**
+	 * @return Anteil der falsch erkannten Bitmuster an allen Bitmustern, deren korrekte Antwort bekannt war.
+	 */
+	double getErrorRate();
+
+	double getMeanLatency();
+
+	long getP50Latency();
+
+	long getP99Latency();
+
+	long getP999Latency();
+
+	long getMaxLatency();
+
+	/**
+	 * Setzt alle Zähler zurück.
+	 */
+	void reset();
+
+}
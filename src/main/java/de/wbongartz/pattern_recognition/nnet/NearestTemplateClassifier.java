@@ -0,0 +1,323 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.util.*;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Ordnet ein Bitmuster der Kategorie der Vorlage zu, von der es sich in den wenigsten Bits unterscheidet (Hamming-Abstand,
+ * siehe Pattern.differences()). Im Gegensatz zum PatternAssociator wird nichts trainiert; die Vorlagen werden unverändert gespeichert.
+ * <p>
+ * Die Vorlagen liegen in einem Multi-Index-Hash: Die Bits werden in m zusammenhängende Teilstücke zerlegt, jedes Teilstück hat
+ * eine eigene Hash-Tabelle (Wert des Teilstücks -&gt; Vorlagen). Unterscheidet sich ein Bitmuster von einer Vorlage in weniger als
+ * m*(r+1) Bits, so weicht mindestens ein Teilstück um höchstens r Bits ab (Schubfachprinzip). Die Suche fragt daher mit r=0,1,...
+ * alle Werte ab, die sich in genau r Bits vom Teilstück des Bitmusters unterscheiden, und endet, sobald der beste gefundene
+ * Abstand kleiner als m*(r+1) ist. Für verrauschte Varianten der Vorlagen ist das meist schon nach r=0 der Fall; verglichen
+ * werden dann nur die Vorlagen, die in mindestens einem Teilstück exakt übereinstimmen.
+ * Würden mehr Abfragen und Vergleiche nötig als es Vorlagen gibt, werden stattdessen alle Vorlagen verglichen.
+ * <p>
+ * Bei gleichem Abstand gewinnt die Vorlage, die im PatternSet zuerst steht. Die Klasse kann von beliebig vielen Threads
+ * gleichzeitig benutzt werden.
+ * @author Wolfgang Bongartz
+ */
+public final class NearestTemplateClassifier implements Classifier {
+
+	private static final int MIN_CHUNK_LENGTH = 8;
+	private static final int MAX_CHUNK_LENGTH = 32;  // Ein Teilstück muss in ein int passen.
+	private static final int MAX_CHUNKS       = 128; // Bei großen Bitmustern längere Teilstücke statt mehr Tabellen.
+
+	private final Pattern[]                _templates;
+	private final int[]                    _labelIds;    // Label-Id jeder Vorlage.
+	private final String[]                 _semantic;    // Wörterbuch der Vorlagen, siehe PatternSet.get_labels().
+	private final int[]                    _chunkStart;  // Erstes Bit jedes Teilstücks.
+	private final int[]                    _chunkLength; // Anzahl der Bits jedes Teilstücks.
+	private final ChunkTable[]             _tables;
+	private final ThreadLocal<SearchState> _state;
+	private final MatchMetrics             _metrics;     // Falls NULL, wird die Erkennung nicht vermessen.
+
+	/**
+	 * Baut den Index über alle Bitmuster eines PatternSets auf. Die Label-Ids der Vorlagen werden aus dem PatternSet übernommen (siehe PatternSet.get_labelId(int)).
+	 * Die Länge der Teilstücke ergibt sich aus der Anzahl der Vorlagen (etwa log2), sodass je Wert eines Teilstücks nur wenige Vorlagen anfallen.
+	 * @param templates Vorlagen. Alle müssen dieselbe Höhe und Breite haben.
+	 * @param metrics Erfasst die Dauer jeder Erkennung. Darf NULL sein.
+	 */
+	public NearestTemplateClassifier(PatternSet templates, MatchMetrics metrics) {
+		if(templates==null || templates.size()==0) throw new IllegalArgumentException("Keine Vorlagen angegeben!");
+		_templates = new Pattern[templates.size()];
+		_labelIds  = new int[_templates.length];
+		_semantic  = templates.get_labels();
+		_metrics   = metrics;
+		for(int t=0; t<_templates.length; t++) {
+			_templates[t] = templates.get_pattern(t);
+			_labelIds[t]  = templates.get_labelId(t);
+			if(_templates[t].get_height()!=_templates[0].get_height() || _templates[t].get_width()!=_templates[0].get_width()) throw new IllegalArgumentException("Alle Vorlagen müssen dieselbe Größe haben!");
+		}
+
+		// Teilstücke möglichst gleich lang wählen.
+		int numberOfBits = _templates[0].get_numberOfBits();
+		int length       = Math.max(31 - Integer.numberOfLeadingZeros(_templates.length), (numberOfBits + MAX_CHUNKS - 1) / MAX_CHUNKS);
+		length           = Math.max(MIN_CHUNK_LENGTH, Math.min(MAX_CHUNK_LENGTH, length));
+		int noOfChunks   = (numberOfBits + length - 1) / length;
+		_chunkStart  = new int[noOfChunks];
+		_chunkLength = new int[noOfChunks];
+		_tables      = new ChunkTable[noOfChunks];
+		for(int c=0; c<noOfChunks; c++) {
+			_chunkStart[c]  = (int) ( (long) c * numberOfBits / noOfChunks );
+			_chunkLength[c] = (int) ( (long) (c+1) * numberOfBits / noOfChunks ) - _chunkStart[c];
+			_tables[c]      = new ChunkTable(_templates, _chunkStart[c], _chunkLength[c]);
+		}
+		_state = ThreadLocal.withInitial(() -> new SearchState(_templates.length, noOfChunks));
+	}
+
+	@Override
+	public String classify(Pattern pattern) throws InappropriateDataException {
+		return _semantic[classifyIndex(pattern)];
+	}
+
+	/**
+	 * Liefert die Label-Id der nächstgelegenen Vorlage.
+	 * @param pattern
+	 * @return Siehe get_semantic(int).
+	 * @throws InappropriateDataException
+	 */
+	@Override
+	public int classifyIndex(Pattern pattern) throws InappropriateDataException {
+		if(pattern==null) throw new IllegalArgumentException();
+		Pattern first = _templates[0];
+		if(pattern.get_height()!=first.get_height() || pattern.get_width()!=first.get_width()) {
+			if(_metrics!=null) _metrics.recordFailure();
+			throw new InappropriateDataException("Größe des Bitmusters passt nicht zu den Vorlagen! Die Vorlagen haben " + first.get_numberOfBits() + " Bits. Das Bitmuster besteht aber aus " + pattern.get_numberOfBits() + " Bits.");
+		}
+		if(_metrics==null) return _labelIds[nearest(pattern)];
+
+		long start = System.nanoTime();
+		int retVal = _labelIds[nearest(pattern)];
+		_metrics.recordMatch(System.nanoTime() - start);
+		return retVal;
+	}
+
+	/**
+	 * Sucht die nächstgelegene Vorlage.
+	 * @param pattern
+	 * @return Index der Vorlage.
+	 */
+	int nearest(Pattern pattern) {
+		SearchState state = _state.get();
+		state.start();
+
+		int   noOfChunks = _tables.length;
+		int   maxLength  = 0;
+		int[] keys       = state._keys;
+		for(int c=0; c<noOfChunks; c++) {
+			keys[c]   = chunk(pattern, _chunkStart[c], _chunkLength[c]);
+			maxLength = Math.max(maxLength, _chunkLength[c]);
+		}
+
+		for(int radius=0; radius<=maxLength; radius++) {
+			long probes = 0L;
+			for(int c=0; c<noOfChunks; c++) probes += binomial(_chunkLength[c], radius);
+			state._work += probes;
+			if(state._work>_templates.length) return nearestLinear(pattern);
+
+			for(int c=0; c<noOfChunks; c++) {
+				int chunkLength = _chunkLength[c];
+				if(radius>chunkLength) continue;
+				ChunkTable table = _tables[c];
+				// Alle Masken mit genau radius gesetzten Bits (Gosper's Hack).
+				long limit = 1L << chunkLength;
+				long mask  = (1L << radius) - 1L;
+				while(mask<limit) {
+					int slot = table.find(keys[c] ^ (int) mask);
+					if(slot>=0) {
+						state._work += table._last[slot] - table._first[slot];
+						if(state._work>_templates.length) return nearestLinear(pattern);
+						for(int i=table._first[slot]; i<table._last[slot]; i++) state.visit(pattern, table._ids[i], _templates);
+					}
+					if(mask==0L) break;
+					long lowest = mask & -mask;
+					long ripple = mask + lowest;
+					mask = ( ( (ripple ^ mask) >>> 2 ) / lowest ) | ripple;
+				}
+			}
+			if(state._bestDistance < (long) noOfChunks * (radius+1)) break;
+		}
+		return state._bestTemplate;
+	}
+
+	/**
+	 * Vergleicht das Bitmuster mit allen Vorlagen.
+	 * @param pattern
+	 * @return Index der Vorlage.
+	 */
+	private int nearestLinear(Pattern pattern) {
+		int bestTemplate = -1;
+		int bestDistance = Integer.MAX_VALUE;
+		for(int t=0; t<_templates.length; t++) {
+			int distance = pattern.differences(_templates[t]);
+			if(distance<bestDistance) {
+				bestDistance = distance;
+				bestTemplate = t;
+			}
+		}
+		return bestTemplate;
+	}
+
+	/**
+	 * Liest ein Teilstück aus den gepackten Bits.
+	 * @param pattern
+	 * @param start Erstes Bit.
+	 * @param length Anzahl der Bits, höchstens 32.
+	 * @return
+	 */
+	private static int chunk(Pattern pattern, int start, int length) {
+		int  word   = start >>> 6;
+		int  offset = start & 63;
+		long value  = pattern.get_word(word) >>> offset;
+		if(offset+length>64) value |= pattern.get_word(word+1) << (64-offset);
+		return (int) ( value & ( (1L << length) - 1L ) );
+	}
+
+	private static long binomial(int n, int k) {
+		if(k<0 || k>n) return 0L;
+		long retVal = 1L;
+		for(int i=1; i<=k; i++) retVal = retVal * (n-k+i) / i;
+		return retVal;
+	}
+
+	@Override
+	public String get_semantic(int index) {
+		return _semantic[index];
+	}
+
+	/**
+	 * @return Anzahl der Kategorien (verschiedene Namen der Vorlagen).
+	 */
+	@Override
+	public int get_noOfOutputs() {
+		return _semantic.length;
+	}
+
+	/**
+	 * @return Anzahl der Vorlagen.
+	 */
+	public int get_noOfTemplates() {
+		return _templates.length;
+	}
+
+	/**
+	 * @return Anzahl der Teilstücke (Hash-Tabellen).
+	 */
+	public int get_noOfChunks() {
+		return _tables.length;
+	}
+
+	/**
+	 * Hash-Tabelle eines Teilstücks (offene Adressierung). Zu jedem vorkommenden Wert des Teilstücks
+	 * liegen die Indizes der Vorlagen zusammenhängend in _ids, aufsteigend sortiert.
+	 */
+	private static final class ChunkTable {
+
+		final int[] _keys;
+		final int[] _first; // -1 = Platz ist frei.
+		final int[] _last;
+		final int[] _ids;
+		final int   _mask;
+
+		ChunkTable(Pattern[] templates, int start, int length) {
+			// Wert des Teilstücks und Index der Vorlage in einem long, damit ein einfaches Sortieren genügt.
+			long[] entries = new long[templates.length];
+			for(int t=0; t<templates.length; t++) {
+				entries[t] = ( (long) chunk(templates[t], start, length) << 32 ) | t;
+			}
+			Arrays.sort(entries);
+
+			int distinct = 0;
+			for(int i=0; i<entries.length; i++) {
+				if(i==0 || (entries[i]>>>32)!=(entries[i-1]>>>32)) distinct++;
+			}
+			int capacity = Integer.highestOneBit(Math.max(2, distinct) * 2 - 1) * 2;
+			_keys  = new int[capacity];
+			_first = new int[capacity];
+			_last  = new int[capacity];
+			_ids   = new int[entries.length];
+			_mask  = capacity - 1;
+			Arrays.fill(_first, -1);
+
+			int i = 0;
+			while(i<entries.length) {
+				int key   = (int) (entries[i]>>>32);
+				int first = i;
+				while(i<entries.length && (int) (entries[i]>>>32)==key) {
+					_ids[i] = (int) entries[i];
+					i++;
+				}
+				int slot = hash(key) & _mask;
+				while(_first[slot]>=0) slot = (slot+1) & _mask;
+				_keys[slot]  = key;
+				_first[slot] = first;
+				_last[slot]  = i;
+			}
+		}
+
+		/**
+		 * @param key
+		 * @return Platz des Wertes oder -1, falls keine Vorlage diesen Wert hat.
+		 */
+		int find(int key) {
+			int slot = hash(key) & _mask;
+			while(_first[slot]>=0) {
+				if(_keys[slot]==key) return slot;
+				slot = (slot+1) & _mask;
+			}
+			return -1;
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+	}
+
+	/**
+	 * Arbeitsspeicher der Suche je Thread. Merkt sich, welche Vorlagen bei der aktuellen Suche schon verglichen wurden,
+	 * da eine Vorlage in mehreren Teilstücken übereinstimmen kann.
+	 */
+	private static final class SearchState {
+
+		final int[] _visited; // Nummer der Suche, in der die Vorlage zuletzt verglichen wurde.
+		final int[] _keys;    // Teilstücke des gesuchten Bitmusters.
+		int         _search;
+		int         _bestTemplate;
+		int         _bestDistance;
+		long        _work;    // Bisherige Abfragen und Vergleiche.
+
+		SearchState(int noOfTemplates, int noOfChunks) {
+			_visited = new int[noOfTemplates];
+			_keys    = new int[noOfChunks];
+		}
+
+		void start() {
+			if(++_search==0) {
+				// Überlauf: Alle Markierungen sind ungültig.
+				Arrays.fill(_visited, 0);
+				_search = 1;
+			}
+			_bestTemplate = -1;
+			_bestDistance = Integer.MAX_VALUE;
+			_work         = 0L;
+		}
+
+		void visit(Pattern pattern, int template, Pattern[] templates) {
+			if(_visited[template]==_search) return;
+			_visited[template] = _search;
+			int distance = pattern.differences(templates[template]);
+			if(distance<_bestDistance || (distance==_bestDistance && template<_bestTemplate)) {
+				_bestDistance = distance;
+				_bestTemplate = template;
+			}
+		}
+
+	}
+
+}
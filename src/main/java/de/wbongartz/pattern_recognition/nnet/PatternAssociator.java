@@ -1,6 +1,9 @@
 package de.wbongartz.pattern_recognition.nnet;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
 
 import org.apache.commons.math3.linear.*;
 
@@ -14,14 +17,27 @@ import de.wbongartz.pattern_recognition.patterns.*;
  */
 public class PatternAssociator {
 
-	private ArrayRealVector _inputVector;
-	private ArrayRealVector _outputVector;
-	private Array2DRowRealMatrix _weigths;
+	private static final int BLOCK_PATTERNS = 64;  // Anzahl der Bitmuster, die matchAll() gemeinsam verarbeitet.
+	private static final int BLOCK_INPUTS   = 128; // Kachelgröße der Matrixmultiplikation in Richtung der Input-Neuronen.
+	private static final int BLOCK_OUTPUTS  = 256; // Kachelgröße der Matrixmultiplikation in Richtung der Output-Neuronen.
+	private static final int MINI_BATCH_CHUNK = 16 * BLOCK_PATTERNS; // Höchstzahl der Bitmuster, die das Mini-Batch-Learning auf einmal im Speicher hält.
+
+	private Workspace _workspace;     // Aktivierungszustände der Input- und Output-Neuronen.
+	private double[] _targetVector;   // Gewünschte Aktivierungszustände der Output-Neuronen beim Training.
+	private double[] _errorVector;    // Arbeitsspeicher der Delta-Regel.
+	private WeightMatrix _weigths; // Zeilenweise abgelegt: Gewicht von Input i zu Output o steht an Position i*_noOfOutputs+o.
+	private Precision _precision;
 	private int _noOfInputs;
 	private int _noOfOutputs;
 	private String[] _semantic;
 	private double _epsilon;
 	private ActivationFunction _activationFunction;
+	private int _noOfShards  = 1;	// Anzahl der Teile, in die die Trainingsdaten beim Batch-Learning zerlegt werden.
+	private int _noOfThreads = 1;	// Anzahl der Threads, auf die die Teile verteilt werden.
+	private List<TrainingListener> _trainingListeners = new ArrayList<TrainingListener>();
+	private MatchMetrics _metrics = null;	// Falls NULL, wird die Erkennung nicht vermessen.
+	private MatchCache _matchCache = null;	// Falls NULL, werden die Ergebnisse nicht zwischengespeichert.
+	private long _weigthsVersion = 0L;	// Wird bei jeder Änderung der Gewichte erhöht; leert den MatchCache.
 
 	/**
 	 * Erzeugt das neuronale Netz.
@@ -31,19 +47,47 @@ public class PatternAssociator {
 	 * @param activationFunction Instanz einer konkreten Aktivierungsfunktion.
 	 */
 	public PatternAssociator(int noOfInputs, int noOfOutputs, double epsilon, ActivationFunction activationFunction) {
+		this(noOfInputs, noOfOutputs, epsilon, activationFunction, Precision.DOUBLE);
+	}
+
+	/**
+	 * Erzeugt das neuronale Netz mit Gewichten in der angegebenen Genauigkeit.
+	 * Bei Precision.FLOAT werden die Deltas weiterhin in double berechnet und erst beim Addieren auf die Gewichte gerundet.
+	 * @param noOfInputs Anzahl der Input-Neuronen.
+	 * @param noOfOutputs Anzahl der Output-Neuronen.
+	 * @param epsilon Lernrate.
+	 * @param activationFunction Instanz einer konkreten Aktivierungsfunktion.
+	 * @param precision Genauigkeit der Gewichte.
+	 */
+	public PatternAssociator(int noOfInputs, int noOfOutputs, double epsilon, ActivationFunction activationFunction, Precision precision) {
 		if(activationFunction==null) throw new IllegalArgumentException("Keine Aktivierungsfunktion angegeben!");
+		if(precision==null) throw new IllegalArgumentException("Keine Genauigkeit angegeben!");
 
 		_noOfInputs   		= noOfInputs;
 		_noOfOutputs  		= noOfOutputs;
 		_epsilon	  		= epsilon;
 		_semantic     		= null;
 		_activationFunction = activationFunction;
-		_inputVector        = new ArrayRealVector(noOfInputs);
-		_outputVector       = new ArrayRealVector(noOfOutputs);
+		_workspace          = new Workspace(noOfInputs, noOfOutputs);
+		_targetVector       = new double[noOfOutputs];
+		_errorVector        = new double[noOfOutputs];
+		_precision          = precision;
 
 		createNetworkTopology();
 	}
 
+	/**
+	 * Erzeugt ein bereits trainiertes Netz aus einem PatternClassifier, z.B. aus einer Modelldatei (siehe PatternClassifier.load()).
+	 * Gewichte, ihre Genauigkeit und semantische Bedeutungen werden kopiert. Das Netz kann weiter trainiert werden.
+	 * @param model
+	 * @param epsilon Lernrate für weiteres Training.
+	 */
+	public PatternAssociator(PatternClassifier model, double epsilon) {
+		this(model.get_noOfInputs(), model.get_noOfOutputs(), epsilon, model.get_activationFunction(), model.get_precision());
+		_weigths = model.get_weigths().copy();
+		_semantic = Arrays.copyOf(model.get_semanticTable(), model.get_semanticTable().length);
+	}
+
 	/**
 	 * Erzeugt die Gewichtungsmatrix, welche die Gewichtungen aller Kanten des Netzes enthält.
 	 * Das Netz besteht nur aus den Input- und den Output-Neuronen. Es gibt also keinen "hidden layer".
@@ -54,8 +98,7 @@ public class PatternAssociator {
 	 * aufgetragen. 
 	 */
 	private void createNetworkTopology() {
-		_weigths = new Array2DRowRealMatrix(_noOfInputs, _noOfOutputs);
-		_weigths.walkInColumnOrder(new SetValueVisitor(0d)); // Setze alle Einträge auf den Initialwert 0.
+		_weigths = WeightMatrix.create(_precision, _noOfInputs, _noOfOutputs); // Alle Einträge haben den Initialwert 0.
 	}
 
 	/**
@@ -66,14 +109,287 @@ public class PatternAssociator {
 	 * @throws InappropriateDataException 
 	 */
 	public String match(Pattern pattern) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		return _semantic[matchIndex(pattern)];
+	}
+
+	/**
+	 * Wie match(), liefert aber den Index des Output-Neurons, das am stärksten reagiert.
+	 * Nach dem Training entspricht der Index der Label-Id im Wörterbuch der Trainingsdaten (siehe PatternSet.get_labels()).
+	 * @param pattern
+	 * @return Siehe get_semantic(int).
+	 * @throws NeuralNetworkIsUntrainedException Wird geworfen, falls das Netz vorab nicht trainiert wurde.
+	 * @throws InappropriateDataException 
+	 */
+	public int matchIndex(Pattern pattern) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
 		
 		if(_semantic==null) throw new NeuralNetworkIsUntrainedException();
 
+		if(_matchCache!=null) return matchIndexCached(pattern);
+
+		if(_metrics!=null) return matchIndexMeasured(pattern);
+
 		resetActivationState();
 		set_inputVector_activationState(pattern);
 		calculate_outputVector_activationState();
 
-		return fetchAnswer();
+		return _workspace.fetchAnswerIndex();
+	}
+
+	/**
+	 * Wie matchIndex(), fragt aber zuerst den MatchCache ab. Treffer werden in den MatchMetrics mit ihrer (kurzen) Dauer erfasst.
+	 * @param pattern
+	 * @return
+	 * @throws InappropriateDataException
+	 */
+	private int matchIndexCached(Pattern pattern) throws InappropriateDataException {
+		long start = (_metrics!=null) ? System.nanoTime() : 0L;
+		_matchCache.validate(_weigthsVersion);
+		int retVal = _matchCache.get(pattern);
+		if(retVal>=0) {
+			if(_metrics!=null) _metrics.recordMatch(System.nanoTime() - start);
+			return retVal;
+		}
+
+		if(_metrics!=null) {
+			retVal = matchIndexMeasured(pattern);
+		} else {
+			resetActivationState();
+			set_inputVector_activationState(pattern);
+			calculate_outputVector_activationState();
+			retVal = _workspace.fetchAnswerIndex();
+		}
+		_matchCache.put(pattern, retVal);
+		return retVal;
+	}
+
+	/**
+	 * Wie matchIndex(), erfasst aber zusätzlich die Dauer in den MatchMetrics.
+	 * @param pattern
+	 * @return
+	 * @throws InappropriateDataException
+	 */
+	private int matchIndexMeasured(Pattern pattern) throws InappropriateDataException {
+		long start = System.nanoTime();
+		try {
+			resetActivationState();
+			set_inputVector_activationState(pattern);
+			calculate_outputVector_activationState();
+			int retVal = _workspace.fetchAnswerIndex();
+			_metrics.recordMatch(System.nanoTime() - start);
+			return retVal;
+		} catch (InappropriateDataException | RuntimeException e) {
+			_metrics.recordFailure();
+			throw e;
+		}
+	}
+
+	/**
+	 * Präsentiert dem Netz alle Bitmuster eines PatternSets und liefert die Antworten des Netzes zurück.
+	 * Die Bitmuster werden blockweise zu einer Input-Matrix zusammengefasst, die in Kacheln mit der 
+	 * Gewichtsmatrix multipliziert wird. Die Ergebnisse entsprechen denen von match().
+	 * Ist ein MatchCache eingeschaltet, werden nur die Bitmuster berechnet, die nicht im Cache liegen.
+	 * @param patterns
+	 * @return Zu jedem Bitmuster (in der Reihenfolge des PatternSets) der Index des erkannten Musters. Siehe get_semantic(int).
+	 * @throws NeuralNetworkIsUntrainedException Wird geworfen, falls das Netz vorab nicht trainiert wurde.
+	 * @throws InappropriateDataException 
+	 */
+	public int[] matchAll(PatternSet patterns) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		if(patterns==null) throw new IllegalArgumentException();
+		return matchAll(patterns.iterator(), patterns.size());
+	}
+
+	/**
+	 * Wie matchAll(PatternSet) für eine Liste von Bitmustern, z.B. einen Block zufällig erzeugter Bitmuster.
+	 * Dafür muss kein PatternSet angelegt werden.
+	 * @param patterns
+	 * @return Zu jedem Bitmuster (in der Reihenfolge der Liste) der Index des erkannten Musters. Siehe get_semantic(int).
+	 * @throws NeuralNetworkIsUntrainedException Wird geworfen, falls das Netz vorab nicht trainiert wurde.
+	 * @throws InappropriateDataException 
+	 */
+	public int[] matchAll(List<Pattern> patterns) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+		if(patterns==null) throw new IllegalArgumentException();
+		return matchAll(patterns.iterator(), patterns.size());
+	}
+
+	private int[] matchAll(Iterator<Pattern> iter, int size) throws NeuralNetworkIsUntrainedException, InappropriateDataException {
+
+		if(_semantic==null) throw new NeuralNetworkIsUntrainedException();
+
+		int[]     retVal = new int[size];
+		double[]  input  = new double[BLOCK_PATTERNS * _noOfInputs];
+		double[]  output = new double[BLOCK_PATTERNS * _noOfOutputs];
+		Pattern[] missed = new Pattern[BLOCK_PATTERNS]; // Bitmuster, die berechnet werden müssen.
+		int[]     target = new int[BLOCK_PATTERNS];     // Position ihres Ergebnisses in retVal.
+		if(_matchCache!=null) _matchCache.validate(_weigthsVersion);
+
+		int first = 0;
+		while(first<retVal.length) {
+			int count = Math.min(BLOCK_PATTERNS, retVal.length-first);
+			long start = (_metrics!=null) ? System.nanoTime() : 0L;
+
+			// Bitmuster des Blocks in die Input-Matrix übertragen (eine Zeile je Bitmuster).
+			int rows = 0;
+			for(int p=0; p<count; p++) {
+				Pattern pattern = iter.next();
+				int inputVectorSize = pattern.get_numberOfBits();
+				if( inputVectorSize != _noOfInputs ) throw new InappropriateDataException("Größe des Bitmusters ist für das Netz nicht passend! Das Netz hat " + _noOfInputs + " Eingangsneuronen. Das Bitmuster besteht aber aus " + inputVectorSize + " Bits.");
+				int cached = (_matchCache!=null) ? _matchCache.get(pattern) : -1;
+				if(cached>=0) {
+					retVal[first+p] = cached;
+					continue;
+				}
+				int row = rows * _noOfInputs;
+				for(int i=0; i<_noOfInputs; i++) {
+					input[row+i] = pattern.get(i) ? 1.0d : 0.0d;
+				}
+				missed[rows] = pattern;
+				target[rows] = first+p;
+				rows++;
+			}
+
+			multiplyBlocked(input, rows, output);
+
+			for(int p=0; p<rows; p++) {
+				int row = p * _noOfOutputs;
+				for(int o=0; o<_noOfOutputs; o++) {
+					output[row+o] = _activationFunction.getFunctionResult(output[row+o]);
+				}
+				retVal[target[p]] = Workspace.indexOfMaximum(output, row, _noOfOutputs);
+				if(_matchCache!=null) _matchCache.put(missed[p], retVal[target[p]]);
+			}
+
+			if(_metrics!=null) _metrics.recordMatches(count, System.nanoTime() - start);
+			first += count;
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Berechnet die Netto-Inputs für einen Block von Bitmustern: output = input x Gewichtsmatrix.
+	 * Die Multiplikation läuft in Kacheln über Input- und Output-Neuronen, damit die benötigten Teile der 
+	 * Gewichtsmatrix im Cache bleiben, während sie auf alle Bitmuster des Blocks angewendet werden.
+	 * Je Output-Neuron werden die Input-Neuronen in aufsteigender Reihenfolge aufsummiert (wie in match()).
+	 * @param input Input-Matrix, eine Zeile mit _noOfInputs Einträgen je Bitmuster.
+	 * @param count Anzahl der Bitmuster im Block.
+	 * @param output Ergebnis-Matrix, eine Zeile mit _noOfOutputs Einträgen je Bitmuster.
+	 */
+	private void multiplyBlocked(double[] input, int count, double[] output) {
+		Arrays.fill(output, 0, count*_noOfOutputs, 0d);
+		for(int i0=0; i0<_noOfInputs; i0+=BLOCK_INPUTS) {
+			int i1 = Math.min(i0+BLOCK_INPUTS, _noOfInputs);
+			for(int o0=0; o0<_noOfOutputs; o0+=BLOCK_OUTPUTS) {
+				int o1 = Math.min(o0+BLOCK_OUTPUTS, _noOfOutputs);
+				for(int p=0; p<count; p++) {
+					int inputRow  = p * _noOfInputs;
+					int outputRow = p * _noOfOutputs;
+					_weigths.multiplyTile(input, inputRow, i0, i1, o0, o1, output, outputRow);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Erzeugt einen unveränderlichen Schnappschuss des trainierten Netzes, der von mehreren Threads 
+	 * gleichzeitig zur Erkennung benutzt werden kann.
+	 * @return
+	 * @throws NeuralNetworkIsUntrainedException Wird geworfen, falls das Netz vorab nicht trainiert wurde.
+	 */
+	public PatternClassifier freeze() throws NeuralNetworkIsUntrainedException {
+		if(_semantic==null) throw new NeuralNetworkIsUntrainedException();
+		return new PatternClassifier(_noOfInputs, _noOfOutputs, _weigths, _semantic, _activationFunction, _metrics);
+	}
+
+	/**
+	 * @return TRUE, falls Erkennung und Training die vektorisierten Schleifen benutzen (Modul jdk.incubator.vector vorhanden).
+	 */
+	public static boolean isVectorized() {
+		return WeightMatrix.VECTORIZED;
+	}
+
+	/**
+	 * @return Genauigkeit der Gewichte.
+	 */
+	public Precision get_precision() {
+		return _precision;
+	}
+
+	/**
+	 * Liefert die semantische Bedeutung eines Output-Neurons.
+	 * @param index Index des Output-Neurons, z.B. ein Ergebnis von matchAll().
+	 * @return
+	 * @throws NeuralNetworkIsUntrainedException Wird geworfen, falls das Netz vorab nicht trainiert wurde.
+	 */
+	public String get_semantic(int index) throws NeuralNetworkIsUntrainedException {
+		if(_semantic==null) throw new NeuralNetworkIsUntrainedException();
+		return _semantic[index];
+	}
+
+	/**
+	 * Legt fest, in wie viele Teile die Trainingsdaten im Batch-Learning-Modus zerlegt werden.
+	 * Jeder Teil ermittelt seine Deltas in einem eigenen Puffer; die Puffer werden anschließend paarweise 
+	 * (als Baum) aufsummiert. Bei gleicher Anzahl Teile ist das Ergebnis unabhängig von der Anzahl der Threads.
+	 * Voreinstellung: 1 (keine Zerlegung). Im Online-Learning-Modus ohne Bedeutung.
+	 * @param noOfShards
+	 */
+	public void setNumberOfShards(int noOfShards) {
+		if(noOfShards<1) throw new IllegalArgumentException();
+		_noOfShards = noOfShards;
+	}
+
+	/**
+	 * Legt fest, auf wie viele Threads die Teile der Trainingsdaten beim Batch-Learning verteilt werden.
+	 * Voreinstellung: 1.
+	 * @param noOfThreads
+	 */
+	public void setNumberOfThreads(int noOfThreads) {
+		if(noOfThreads<1) throw new IllegalArgumentException();
+		_noOfThreads = noOfThreads;
+	}
+
+	/**
+	 * Legt fest, in welchen MatchMetrics die Erkennung durch match() und matchAll() erfasst wird.
+	 * Bei matchAll() geht jedes Bitmuster mit der mittleren Dauer seines Blocks ein. 
+	 * Ein mit freeze() erzeugter PatternClassifier übernimmt die MatchMetrics.
+	 * @param metrics Falls NULL, wird nichts erfasst (Voreinstellung).
+	 */
+	public void setMetrics(MatchMetrics metrics) {
+		_metrics = metrics;
+	}
+
+	/**
+	 * Schaltet einen Ergebnis-Cache für match() und matchAll() ein bzw. aus (siehe MatchCache).
+	 * Der Cache wird geleert, sobald sich die Gewichte durch Training ändern. Ein mit freeze() erzeugter 
+	 * PatternClassifier benutzt den Cache nicht.
+	 * @param capacity Höchstzahl der zwischengespeicherten Ergebnisse. 0 schaltet den Cache aus (Voreinstellung).
+	 */
+	public void setMatchCacheSize(int capacity) {
+		if(capacity<0) throw new IllegalArgumentException();
+		_matchCache = (capacity>0) ? new MatchCache(capacity, _noOfInputs) : null;
+	}
+
+	/**
+	 * @return Der Ergebnis-Cache mit seinen Zählern, oder NULL, falls kein Cache eingeschaltet ist.
+	 */
+	public MatchCache get_matchCache() {
+		return _matchCache;
+	}
+
+	/**
+	 * Meldet einen TrainingListener an, der nach jeder Trainings-Epoche benachrichtigt wird.
+	 * @param listener
+	 */
+	public void addTrainingListener(TrainingListener listener) {
+		if(listener==null) throw new IllegalArgumentException();
+		_trainingListeners.add(listener);
+	}
+
+	/**
+	 * Meldet einen TrainingListener wieder ab.
+	 * @param listener
+	 */
+	public void removeTrainingListener(TrainingListener listener) {
+		_trainingListeners.remove(listener);
 	}
 
 	/**
@@ -84,76 +400,335 @@ public class PatternAssociator {
 	 * @param noOfEpoch Anzahl der Epochen, die durchlaufen werden sollen (Anzahl der Durchläufe mit den Trainingsdaten). 
 	 * @param randomNumberSource Falls eine Quelle für Zufallszahlen übergeben wird werden die Bitmuster in zufälliger Reihenfolge durchlaufen. 
 	 * Andernfalls linear, so wie sie im PatternSet gespeichert sind.
+	 * @return Anzahl der durchlaufenen Epochen und Fehler der letzten Epoche.
 	 * @throws InappropriateDataException 
 	 */
-	public void train(PatternSet trainingData, boolean batchLearningMode, int noOfEpoch, Random randomNumberSource) throws InappropriateDataException {
+	public TrainingResult train(PatternSet trainingData, boolean batchLearningMode, int noOfEpoch, RandomGenerator randomNumberSource) throws InappropriateDataException {
+		return train(trainingData, batchLearningMode, noOfEpoch, randomNumberSource, null);
+	}
+
+	/**
+	 * Trainiert das Netz mit den übergebenen Trainingsdaten, höchstens aber über noOfEpoch Epochen.
+	 * Nach jeder Epoche werden die Abbruchkriterien geprüft. Der Fehler einer Epoche wird während der Epoche ermittelt, 
+	 * beim Batch-Learning also mit den Gewichten vor der Anpassung.
+	 * @param trainingData Trainingsdaten, mit denen das Netz trainiert werden soll.
+	 * @param batchLearningMode Siehe train(PatternSet, boolean, int, RandomGenerator).
+	 * @param noOfEpoch Höchstzahl der Epochen.
+	 * @param randomNumberSource Siehe train(PatternSet, boolean, int, RandomGenerator).
+	 * @param criteria Abbruchkriterien. Falls NULL werden alle Epochen durchlaufen.
+	 * @return Anzahl der durchlaufenen Epochen, Fehler der letzten Epoche und Grund für das Ende des Trainings.
+	 * @throws InappropriateDataException 
+	 */
+	public TrainingResult train(PatternSet trainingData, boolean batchLearningMode, int noOfEpoch, RandomGenerator randomNumberSource, StoppingCriteria criteria) throws InappropriateDataException {
 		
-		_semantic = trainingData.getListOfName();
+		_semantic = trainingData.get_labels(); // Die Label-Ids der Trainingsdaten sind die Indizes der Output-Neuronen.
 		
 		if(_noOfOutputs>_semantic.length) throw new InappropriateDataException("Die Trainingsdaten enthalten mehr Kategorien, als das Netz verarbeiten kann.");
 		
-		Array2DRowRealMatrix deltaWeigths = new Array2DRowRealMatrix(_noOfInputs, _noOfOutputs);
-		Iterator<Pattern> iter=null;
+		ConvergenceMonitor monitor = new ConvergenceMonitor(criteria, _trainingListeners, _weigths);
+
+		if(batchLearningMode && _noOfShards>1) {
+			trainSharded(trainingData, noOfEpoch, randomNumberSource, monitor);
+			return monitor.getResult();
+		}
+
+		double[] deltaWeigths = new double[_noOfInputs * _noOfOutputs];
+		RandomPatternIterator shuffled = (randomNumberSource!=null) ? new RandomPatternIterator(trainingData, randomNumberSource) : null; // Wird in jeder Epoche neu gemischt.
 		Pattern trainingPattern=null;
+		// Online-Learning: Zeilen des Delta-Puffers, die in der aktuellen Epoche geändert wurden. Nur diese werden addiert.
+		boolean[] changed     = batchLearningMode ? null : new boolean[_noOfInputs];
+		int[]     changedRows = batchLearningMode ? null : new int[_noOfInputs];
+		int       noOfChangedRows = 0;
 
 		for(int epoch=0; epoch<noOfEpoch; epoch++) {
 
+			monitor.startEpoch();
 			resetActivationState(); // Setze die Aktivierungszustände alle Neuronen zurück.
 			
-			deltaWeigths.walkInColumnOrder(new SetValueVisitor(0d)); // Setze alle Einträge auf 0.
+			Arrays.fill(deltaWeigths, 0d); // Setze alle Einträge auf 0.
+			for(int k=0; k<noOfChangedRows; k++) changed[changedRows[k]] = false;
+			noOfChangedRows = 0;
 			
-			if(randomNumberSource!=null)
-				iter = new RandomPatternIterator(trainingData, randomNumberSource);
-			else
-				iter = trainingData.iterator();
+			if(shuffled!=null) shuffled.reset();
 			
-			while(iter.hasNext()) {
-				trainingPattern = (Pattern) iter.next(); // Hole nächstes Bitmuster.
-				ArrayRealVector targetVector = createTargetVector(trainingPattern);
+			double squaredError = 0d;
+			int count = 0;
+			while(count<trainingData.size()) {
+				int index = epochIndex(shuffled, count);
+				trainingPattern = trainingData.get_pattern(index); // Hole nächstes Bitmuster.
+				set_targetVector(trainingData.get_labelId(index), _targetVector);
 				set_inputVector_activationState(trainingPattern);	// Übertrage Bitmuster in Input-Neuronen.
 				calculate_outputVector_activationState();
-				applyLearningRule(targetVector, deltaWeigths);
-				if(!batchLearningMode) updateWeights(deltaWeigths);	// Falls Online-learning aktiviert ist: Aktualisiere nun die Gewichtsmatrix.
+				squaredError += squaredError(_workspace._outputVector, _targetVector);
+				count++;
+				applyLearningRule(deltaWeigths);
+				if(!batchLearningMode) {
+					// Falls Online-learning aktiviert ist: Aktualisiere nun die Gewichtsmatrix.
+					// Ab der Hälfte der Zeilen wird ohnehin die ganze Matrix addiert (siehe updateWeights()), bis zum Ende der Epoche.
+					for(int k=0; k<_workspace._noOfActiveInputs && 2*noOfChangedRows<_noOfInputs; k++) {
+						int i = _workspace._activeInputs[k];
+						if(!changed[i]) {
+							changed[i] = true;
+							changedRows[noOfChangedRows++] = i;
+						}
+					}
+					updateWeights(deltaWeigths, changedRows, noOfChangedRows);
+				}
 			}
 			if(batchLearningMode) updateWeights(deltaWeigths); // Falls Offline-learning aktiviert ist:  Aktualisiere nun die Gewichtsmatrix.
+
+			if(monitor.endEpoch(squaredError / ( (double) count * _noOfOutputs ), count)) break;
 		}
+		return monitor.getResult();
 	}
 
 	/**
-	 * Erzeugt einen Vektor, der dem gewünschten Output des Netzes entspricht.
-	 * @param trainingPattern
-	 * @return
+	 * Asynchrones Online-Learning mit mehreren Threads ("Hogwild").
+	 * Die Threads holen sich die Bitmuster einer Epoche aus einer gemeinsamen, zufällig sortierten Warteschlange und 
+	 * addieren die Deltas jedes Bitmusters sofort und ohne Sperren auf die gemeinsame Gewichtsmatrix. Gleichzeitige 
+	 * Änderungen desselben Gewichts können dabei verloren gehen; bei vielen Output-Neuronen ist das selten.
+	 * Die Lernregel unterscheidet sich vom sequentiellen Online-Learning (train()): Dort wird der Delta-Puffer innerhalb einer 
+	 * Epoche nicht zurückgesetzt, nach jedem Bitmuster wird also die Summe der Deltas aller bisherigen Bitmuster der Epoche 
+	 * addiert. Hier wird das Delta jedes Bitmusters genau einmal addiert. Unterschiede in der Konvergenz gehen daher vor allem 
+	 * auf die Lernregel zurück und nicht auf die fehlende Synchronisation.
+	 * Die Anzahl der Threads wird mit setNumberOfThreads() festgelegt. Mit einem Thread ist das Ergebnis reproduzierbar.
+	 * @param trainingData Trainingsdaten, mit denen das Netz trainiert werden soll.
+	 * @param noOfEpoch Höchstzahl der Epochen.
+	 * @param randomNumberSource Falls eine Quelle für Zufallszahlen übergeben wird werden die Bitmuster in zufälliger Reihenfolge durchlaufen. 
+	 * Andernfalls linear, so wie sie im PatternSet gespeichert sind.
+	 * @return Anzahl der durchlaufenen Epochen und Fehler der letzten Epoche.
+	 * @throws InappropriateDataException 
 	 */
-	private ArrayRealVector createTargetVector(Pattern trainingPattern) {
-		
-		String targetName = trainingPattern.get_name();
-		int targetIndex=-1;
-		for(int i=0; i<_semantic.length; i++) {
-			if(_semantic[i].compareTo(targetName)==0) {
-				targetIndex=i;
+	public TrainingResult trainAsynchronously(PatternSet trainingData, int noOfEpoch, RandomGenerator randomNumberSource) throws InappropriateDataException {
+		return trainAsynchronously(trainingData, noOfEpoch, randomNumberSource, null);
+	}
+
+	/**
+	 * Wie trainAsynchronously(PatternSet, int, RandomGenerator), prüft aber nach jeder Epoche die Abbruchkriterien.
+	 * Der Fehler einer Epoche wird während der Epoche ermittelt, also mit den Gewichten vor der jeweiligen Anpassung.
+	 * @param trainingData Trainingsdaten, mit denen das Netz trainiert werden soll.
+	 * @param noOfEpoch Höchstzahl der Epochen.
+	 * @param randomNumberSource Siehe trainAsynchronously(PatternSet, int, RandomGenerator).
+	 * @param criteria Abbruchkriterien. Falls NULL werden alle Epochen durchlaufen.
+	 * @return Anzahl der durchlaufenen Epochen, Fehler der letzten Epoche und Grund für das Ende des Trainings.
+	 * @throws InappropriateDataException 
+	 */
+	public TrainingResult trainAsynchronously(PatternSet trainingData, int noOfEpoch, RandomGenerator randomNumberSource, StoppingCriteria criteria) throws InappropriateDataException {
+
+		_semantic = trainingData.get_labels(); // Die Label-Ids der Trainingsdaten sind die Indizes der Output-Neuronen.
+
+		if(_noOfOutputs>_semantic.length) throw new InappropriateDataException("Die Trainingsdaten enthalten mehr Kategorien, als das Netz verarbeiten kann.");
+
+		Pattern[]         epochPatterns = new Pattern[trainingData.size()];
+		int[]             epochLabels   = new int[trainingData.size()];
+		AtomicInteger     cursor        = new AtomicInteger();
+		List<AsynchronousWorker> workers = new ArrayList<AsynchronousWorker>();
+		for(int t=0; t<_noOfThreads; t++) workers.add(new AsynchronousWorker(epochPatterns, epochLabels, cursor));
+		ConvergenceMonitor monitor = new ConvergenceMonitor(criteria, _trainingListeners, _weigths);
+		RandomPatternIterator shuffled = (randomNumberSource!=null) ? new RandomPatternIterator(trainingData, randomNumberSource) : null; // Wird in jeder Epoche neu gemischt.
+
+		ForkJoinPool pool = new ForkJoinPool(_noOfThreads);
+		try {
+			for(int epoch=0; epoch<noOfEpoch; epoch++) {
+
+				if(shuffled!=null) shuffled.reset();
+
+				int count;
+				for(count=0; count<trainingData.size(); count++) {
+					int index = epochIndex(shuffled, count);
+					epochPatterns[count] = trainingData.get_pattern(index);
+					epochLabels[count]   = trainingData.get_labelId(index);
+				}
+				cursor.set(0);
+
+				monitor.startEpoch();
+				double squaredError = 0d;
+				for(Future<Double> result: pool.invokeAll(workers)) {
+					squaredError += result.get();
+				}
+				_weigthsVersion++;
+				if(monitor.endEpoch(squaredError / ( (double) count * _noOfOutputs ), count)) break;
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Training wurde unterbrochen.", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof InappropriateDataException) throw (InappropriateDataException) e.getCause();
+			throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			pool.shutdown();
 		}
-		
-		ArrayRealVector retVal = new ArrayRealVector(_noOfOutputs);
-		retVal.setEntry(targetIndex, 1.0d);
-		return retVal;
+
+		return monitor.getResult();
+	}
+
+	/**
+	 * Mini-Batch-Learning: Die Bitmuster einer Epoche werden in Gruppen zu je batchSize Bitmustern gelernt, die Gewichte 
+	 * werden nach jeder Gruppe angepasst. Liegt zwischen Online-Learning und Batch-Learning; mit batchSize gleich der Anzahl 
+	 * der Trainingsdaten ist das Ergebnis dasselbe wie beim Batch-Learning (train() mit batchLearningMode=TRUE).
+	 * Die Bitmuster einer Gruppe werden zu einer Input-Matrix X (eine Zeile je Bitmuster) zusammengefasst. Die Netto-Inputs 
+	 * ergeben sich blockweise als Matrixprodukt X x Gewichtsmatrix (wie in matchAll()), die Gewichtsänderung als Matrixprodukt 
+	 * X^T x E mit den Fehlern E = epsilon * (Soll - Ist) aller Bitmuster der Gruppe. Jede Zeile der Gewichtsmatrix wird so je 
+	 * Gruppe nur einmal geändert statt einmal je Bitmuster. Wie beim asynchronen Learning wird das Delta jedes Bitmusters genau einmal addiert.
+	 * @param trainingData Trainingsdaten, mit denen das Netz trainiert werden soll.
+	 * @param batchSize Anzahl der Bitmuster je Gruppe. Die letzte Gruppe einer Epoche kann kleiner sein.
+	 * @param noOfEpoch Höchstzahl der Epochen.
+	 * @param randomNumberSource Siehe train(PatternSet, boolean, int, RandomGenerator).
+	 * @param criteria Abbruchkriterien. Falls NULL werden alle Epochen durchlaufen.
+	 * @return Anzahl der durchlaufenen Epochen, Fehler der letzten Epoche und Grund für das Ende des Trainings.
+	 * @throws InappropriateDataException 
+	 */
+	public TrainingResult trainMiniBatch(PatternSet trainingData, int batchSize, int noOfEpoch, RandomGenerator randomNumberSource, StoppingCriteria criteria) throws InappropriateDataException {
+		if(batchSize<1) throw new IllegalArgumentException("Eine Gruppe muss wenigstens ein Bitmuster enthalten!");
+
+		_semantic = trainingData.get_labels(); // Die Label-Ids der Trainingsdaten sind die Indizes der Output-Neuronen.
+
+		if(_noOfOutputs>_semantic.length) throw new InappropriateDataException("Die Trainingsdaten enthalten mehr Kategorien, als das Netz verarbeiten kann.");
+
+		ConvergenceMonitor monitor = new ConvergenceMonitor(criteria, _trainingListeners, _weigths);
+		MiniBatch miniBatch = new MiniBatch(Math.max(1, Math.min(batchSize, trainingData.size())));
+		RandomPatternIterator shuffled = (randomNumberSource!=null) ? new RandomPatternIterator(trainingData, randomNumberSource) : null; // Wird in jeder Epoche neu gemischt.
+
+		for(int epoch=0; epoch<noOfEpoch; epoch++) {
+
+			monitor.startEpoch();
+			if(shuffled!=null) shuffled.reset();
+
+			double squaredError = 0d;
+			int count = 0;
+			while(count<trainingData.size()) {
+				int size = 0;
+				while(size<miniBatch._patterns.length && count+size<trainingData.size()) {
+					int index = epochIndex(shuffled, count+size);
+					miniBatch._patterns[size] = trainingData.get_pattern(index);
+					miniBatch._labelIds[size] = trainingData.get_labelId(index);
+					size++;
+				}
+				squaredError += miniBatch.learn(size);
+				count += size;
+			}
+
+			if(monitor.endEpoch(squaredError / ( (double) count * _noOfOutputs ), count)) break;
+		}
+		return monitor.getResult();
+	}
+
+	/**
+	 * Batch-Learning mit in Teile zerlegten Trainingsdaten.
+	 * Die Bitmuster einer Epoche werden in _noOfShards zusammenhängende Bereiche aufgeteilt, die unabhängig voneinander
+	 * (und ggf. parallel) ihre Deltas ermitteln. Da sich die Gewichte während einer Epoche nicht ändern, ist das Ergebnis 
+	 * bis auf die Reihenfolge der Summation dasselbe wie beim sequentiellen Batch-Learning.
+	 * @param trainingData
+	 * @param noOfEpoch
+	 * @param randomNumberSource
+	 * @param monitor Prüft nach jeder Epoche die Abbruchkriterien.
+	 * @throws InappropriateDataException
+	 */
+	private void trainSharded(PatternSet trainingData, int noOfEpoch, RandomGenerator randomNumberSource, ConvergenceMonitor monitor) throws InappropriateDataException {
+
+		TrainingShard[] shards = new TrainingShard[_noOfShards];
+		for(int s=0; s<shards.length; s++) shards[s] = new TrainingShard();
+		Pattern[] epochPatterns = new Pattern[trainingData.size()];
+		int[]     epochLabels   = new int[trainingData.size()];
+		RandomPatternIterator shuffled = (randomNumberSource!=null) ? new RandomPatternIterator(trainingData, randomNumberSource) : null; // Wird in jeder Epoche neu gemischt.
+
+		ForkJoinPool pool = new ForkJoinPool(_noOfThreads);
+		try {
+			for(int epoch=0; epoch<noOfEpoch; epoch++) {
+
+				if(shuffled!=null) shuffled.reset();
+
+				int count;
+				for(count=0; count<trainingData.size(); count++) {
+					int index = epochIndex(shuffled, count);
+					epochPatterns[count] = trainingData.get_pattern(index);
+					epochLabels[count]   = trainingData.get_labelId(index);
+				}
+
+				monitor.startEpoch();
+				pool.invoke(new ShardReduction(shards, 0, shards.length, epochPatterns, epochLabels, count));
+
+				updateWeights(shards[0]._deltaWeigths); // Nach der Reduktion enthält der erste Puffer die Summe aller Deltas.
+
+				double squaredError = 0d;
+				for(TrainingShard shard: shards) squaredError += shard._squaredError;
+				if(monitor.endEpoch(squaredError / ( (double) count * _noOfOutputs ), count)) break;
+			}
+		} catch (ShardFailure e) {
+			throw (InappropriateDataException) e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Setzt den Vektor, der dem gewünschten Output des Netzes entspricht (One-Hot-Vektor).
+	 * Das Soll-Output-Neuron ist die Label-Id des Bitmusters in den Trainingsdaten; _semantic entspricht deren Wörterbuch.
+	 * @param labelId Siehe PatternSet.get_labelId(int).
+	 * @param targetVector
+	 */
+	private void set_targetVector(int labelId, double[] targetVector) {
+		Arrays.fill(targetVector, 0d);
+		targetVector[labelId] = 1.0d;
+	}
+
+	/**
+	 * Liefert den Index des k-ten Bitmusters einer Epoche in den Trainingsdaten.
+	 * @param shuffled Falls NULL werden die Bitmuster in der Reihenfolge des PatternSets durchlaufen.
+	 * @param k
+	 * @return
+	 */
+	private static int epochIndex(RandomPatternIterator shuffled, int k) {
+		return (shuffled!=null) ? shuffled.nextIndex() : k;
+	}
+
+	/**
+	 * Liefert die Summe der quadratischen Abweichungen der Output-Neuronen von ihrem Sollwert.
+	 * @param outputVector
+	 * @param targetVector
+	 * @return
+	 */
+	private static double squaredError(double[] outputVector, double[] targetVector) {
+		double sum = 0d;
+		for(int o=0; o<outputVector.length; o++) {
+			double difference = targetVector[o] - outputVector[o];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	/**
+	 * Wie squaredError(double[], double[]) für eine Zeile einer Ergebnis-Matrix.
+	 * @param output Ergebnis-Matrix, eine Zeile mit _noOfOutputs Einträgen je Bitmuster.
+	 * @param row Index des ersten Eintrags der Zeile.
+	 * @param targetVector
+	 * @return
+	 */
+	private static double squaredError(double[] output, int row, double[] targetVector) {
+		double sum = 0d;
+		for(int o=0; o<targetVector.length; o++) {
+			double difference = targetVector[o] - output[row+o];
+			sum += difference * difference;
+		}
+		return sum;
 	}
 
 	/**
 	 * Setzt den Aktivierungszustand aller Neuronen zurück auf "0".
 	 */
 	private void resetActivationState() {
-		_inputVector  = new ArrayRealVector(_noOfInputs);
-		_outputVector = new ArrayRealVector(_noOfOutputs);
+		_workspace._noOfActiveInputs = 0;
+		Arrays.fill(_workspace._outputVector, 0d);
 	}
 
 	/**
-	 * Berechne das Delta zur aktuellen Gewichtsmatrix.
+	 * Berechne das Delta zur aktuellen Gewichtsmatrix (Delta-Regel).
+	 * Da die Input-Neuronen nur die Zustände 0 und 1 annehmen, ändern sich ausschließlich die Zeilen
+	 * der aktiven Input-Neuronen. Für diese entspricht das Delta epsilon * (Soll - Ist) des jeweiligen Output-Neurons.
 	 * @param deltaWeigths
 	 */
-	private void applyLearningRule(ArrayRealVector targetVector, Array2DRowRealMatrix deltaWeigths) {
-		DeltaRule deltaRule = new DeltaRule(_inputVector, targetVector, deltaWeigths, _epsilon);
-		_outputVector.walkInDefaultOrder(deltaRule);
+	private void applyLearningRule(double[] deltaWeigths) {
+		DeltaRule.apply(deltaWeigths, _noOfOutputs, _workspace._activeInputs, _workspace._noOfActiveInputs, _workspace._outputVector, _targetVector, _epsilon, _errorVector);
 	}
 
 	/**
@@ -162,55 +737,331 @@ public class PatternAssociator {
 	 * @throws InappropriateDataException 
 	 */
 	private void set_inputVector_activationState(Pattern pattern) throws InappropriateDataException {
-		int inputVectorSize = pattern.get_height()*pattern.get_width();
-		if( inputVectorSize != _noOfInputs ) throw new InappropriateDataException("Größe des Bitmusters ist für das Netz nicht passend! Das Netz hat " + _noOfInputs + " Eingangsneuronen. Das Bitmuster besteht aber aus " + inputVectorSize + " Bits.");
-
-		// Convert pattern to input vector.
-		for(int i=0; i<pattern.get_height(); i++) {
-			for(int j=0; j<pattern.get_width(); j++) {
-				// Setze den Aktivierungszustand aller Input-Neuronen.
-				if( pattern.get(i, j) )
-					_inputVector.setEntry(i+j, 1.0d);
-				else
-					_inputVector.setEntry(i+j, 0.0d);
-			}
-		}
+		_workspace.set_inputVector_activationState(pattern);
 	}
 
 	/**
 	 * Berechnet die Aktivierungszustände der Output-Neuronen.
 	 */
 	private void calculate_outputVector_activationState() {
-		_activationFunction.setInputVector(_inputVector);
-		_activationFunction.setWeigths(_weigths);
-		_outputVector.walkInDefaultOrder(_activationFunction);
+		_activationFunction.calculate(_weigths, _workspace);
 	}
 
 	/**
 	 * Addiere das aktuelle Delta auf die Gewichtsmatrix.
 	 * @param deltaWeigths
 	 */
-	private void updateWeights(Array2DRowRealMatrix deltaWeigths) {
-		Array2DRowRealMatrix newWeigths = deltaWeigths.add(_weigths);
-		_weigths = newWeigths;
+	private void updateWeights(double[] deltaWeigths) {
+		_weigths.add(deltaWeigths);
+		_weigthsVersion++;
+	}
+
+	/**
+	 * Wie updateWeights(double[]), addiert aber nur die angegebenen Zeilen des Delta-Puffers. 
+	 * Alle übrigen Zeilen müssen 0 sein; das Ergebnis ist dann dasselbe.
+	 * Betrifft die Änderung wenigstens die Hälfte der Zeilen, wird die ganze Matrix am Stück addiert; 
+	 * das ist schneller als der Zugriff auf verstreute Zeilen.
+	 * @param deltaWeigths
+	 * @param rows Indizes der Zeilen (Input-Neuronen).
+	 * @param count Anzahl der gültigen Einträge in rows.
+	 */
+	private void updateWeights(double[] deltaWeigths, int[] rows, int count) {
+		if(2*count>=_noOfInputs) {
+			updateWeights(deltaWeigths);
+			return;
+		}
+		_weigths.addRows(rows, count, deltaWeigths);
+		_weigthsVersion++;
+	}
+
+	/**
+	 * Liefert eine Kopie der Gewichtsmatrix (Input-Neuronen in den Zeilen, Output-Neuronen in den Spalten).
+	 * @return
+	 */
+	Array2DRowRealMatrix getWeigthMatrix() {
+		Array2DRowRealMatrix retVal = new Array2DRowRealMatrix(_noOfInputs, _noOfOutputs);
+		for(int i=0; i<_noOfInputs; i++) {
+			for(int o=0; o<_noOfOutputs; o++) {
+				retVal.setEntry(i, o, _weigths.get(i*_noOfOutputs+o));
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Arbeitsspeicher für einen Teil der Trainingsdaten beim zerlegten Batch-Learning.
+	 */
+	private class TrainingShard {
+
+		final Workspace _workspace    = new Workspace(_noOfInputs, _noOfOutputs);
+		final double[]  _targetVector = new double[_noOfOutputs];
+		final double[]  _errorVector  = new double[_noOfOutputs];
+		final double[]  _deltaWeigths = new double[_noOfInputs * _noOfOutputs];
+		double          _squaredError;
+
+		/**
+		 * Ermittelt die Deltas für einen Bereich der Trainingsdaten.
+		 * @param patterns
+		 * @param labelIds Label-Id jedes Bitmusters.
+		 * @param from Index des ersten Bitmusters (einschließlich).
+		 * @param to Index des letzten Bitmusters (ausschließlich).
+		 * @throws InappropriateDataException
+		 */
+		void learn(Pattern[] patterns, int[] labelIds, int from, int to) throws InappropriateDataException {
+			Arrays.fill(_deltaWeigths, 0d);
+			_squaredError = 0d;
+			for(int i=from; i<to; i++) {
+				set_targetVector(labelIds[i], _targetVector);
+				_workspace.set_inputVector_activationState(patterns[i]);
+				_activationFunction.calculate(_weigths, _workspace);
+				_squaredError += squaredError(_workspace._outputVector, _targetVector);
+				DeltaRule.apply(_deltaWeigths, _noOfOutputs, _workspace._activeInputs, _workspace._noOfActiveInputs, _workspace._outputVector, _targetVector, _epsilon, _errorVector);
+			}
+		}
+
+	}
+
+	/**
+	 * Arbeitsspeicher des Mini-Batch-Learnings für eine Gruppe von Bitmustern.
+	 * Eine Gruppe wird in Abschnitten zu höchstens MINI_BATCH_CHUNK Bitmustern verarbeitet. Je Abschnitt werden die Bitmuster, 
+	 * in denen ein Input-Neuron aktiv ist, im CSR-Format abgelegt (Spalten von X); der Speicherbedarf richtet sich nach der 
+	 * Anzahl der gesetzten Bits und nicht nach Input-Neuronen x Bitmustern. Die Deltas werden über alle Abschnitte in 
+	 * _deltaWeigths gesammelt und am Ende der Gruppe nur für die betroffenen Zeilen auf die Gewichte addiert.
+	 */
+	private class MiniBatch {
+
+		final Pattern[] _patterns;                                            // Bitmuster der aktuellen Gruppe.
+		final int[]     _labelIds;                                            // Label-Id jedes Bitmusters der Gruppe.
+		final double[]  _input        = new double[BLOCK_PATTERNS * _noOfInputs];  // Block der Input-Matrix X.
+		final double[]  _output       = new double[BLOCK_PATTERNS * _noOfOutputs]; // Netto-Inputs des Blocks.
+		final double[]  _errors;                                              // Matrix E: je Bitmuster des Abschnitts eine Zeile epsilon * (Soll - Ist).
+		final int[]     _firstBit;                                            // Je Bitmuster des Abschnitts der erste Eintrag in _setBits.
+		int[]           _setBits      = new int[0];                           // Aktive Input-Neuronen aller Bitmuster des Abschnitts.
+		final int[]     _firstPattern = new int[_noOfInputs+1];               // CSR: Je Input-Neuron der erste Eintrag in _patternsOfInput.
+		int[]           _patternsOfInput = new int[0];                        // CSR: Bitmuster des Abschnitts, in denen das Input-Neuron aktiv ist.
+		final int[]     _next         = new int[_noOfInputs];
+		final double[]  _deltaWeigths = new double[_noOfInputs * _noOfOutputs]; // Deltas der Gruppe.
+		final boolean[] _changed      = new boolean[_noOfInputs];             // Zeilen von _deltaWeigths, die in dieser Gruppe geändert wurden.
+		final int[]     _changedRows  = new int[_noOfInputs];
+		final double[]  _rowDelta     = new double[_noOfOutputs];
+		final int[]     _row          = new int[1];
+
+		/**
+		 * @param capacity Höchstzahl der Bitmuster je Gruppe.
+		 */
+		MiniBatch(int capacity) {
+			int chunk  = Math.min(capacity, MINI_BATCH_CHUNK);
+			_patterns  = new Pattern[capacity];
+			_labelIds  = new int[capacity];
+			_errors    = new double[chunk * _noOfOutputs];
+			_firstBit  = new int[chunk+1];
+		}
+
+		/**
+		 * Lernt die ersten size Bitmuster aus _patterns (mit den Label-Ids aus _labelIds) und passt die Gewichte an.
+		 * @param size
+		 * @return Summe der quadratischen Fehler (vor der Anpassung).
+		 * @throws InappropriateDataException
+		 */
+		double learn(int size) throws InappropriateDataException {
+			double squaredError = 0d;
+			int noOfChangedRows = 0;
+
+			for(int chunk=0; chunk<size; chunk+=MINI_BATCH_CHUNK) {
+				int chunkSize = Math.min(MINI_BATCH_CHUNK, size-chunk);
+
+				// Aktive Input-Neuronen aller Bitmuster des Abschnitts ermitteln und je Input-Neuron zählen.
+				Arrays.fill(_firstPattern, 0);
+				for(int p=0; p<chunkSize; p++) {
+					Pattern pattern = _patterns[chunk+p];
+					int inputVectorSize = pattern.get_numberOfBits();
+					if( inputVectorSize != _noOfInputs ) throw new InappropriateDataException("Größe des Bitmusters ist für das Netz nicht passend! Das Netz hat " + _noOfInputs + " Eingangsneuronen. Das Bitmuster besteht aber aus " + inputVectorSize + " Bits.");
+					if(_setBits.length-_firstBit[p]<_noOfInputs) _setBits = Arrays.copyOf(_setBits, Math.max(_firstBit[p]+_noOfInputs, 2*_setBits.length));
+					int noOfActiveInputs = pattern.get_setBits(_setBits, _firstBit[p]);
+					_firstBit[p+1] = _firstBit[p] + noOfActiveInputs;
+					for(int k=_firstBit[p]; k<_firstBit[p+1]; k++) _firstPattern[_setBits[k]+1]++;
+				}
+
+				// CSR aufbauen. Die Bitmuster stehen je Input-Neuron in aufsteigender Reihenfolge.
+				for(int i=0; i<_noOfInputs; i++) _firstPattern[i+1] += _firstPattern[i];
+				if(_patternsOfInput.length<_firstBit[chunkSize]) _patternsOfInput = new int[Math.max(_firstBit[chunkSize], 2*_patternsOfInput.length)];
+				System.arraycopy(_firstPattern, 0, _next, 0, _noOfInputs);
+				for(int p=0; p<chunkSize; p++) {
+					for(int k=_firstBit[p]; k<_firstBit[p+1]; k++) _patternsOfInput[_next[_setBits[k]]++] = p;
+				}
+
+				// Netto-Inputs: X x Gewichtsmatrix, in Blöcken zu BLOCK_PATTERNS Zeilen.
+				for(int first=0; first<chunkSize; first+=BLOCK_PATTERNS) {
+					int count = Math.min(BLOCK_PATTERNS, chunkSize-first);
+					for(int p=0; p<count; p++) {
+						int row = p * _noOfInputs;
+						Arrays.fill(_input, row, row+_noOfInputs, 0d);
+						for(int k=_firstBit[first+p]; k<_firstBit[first+p+1]; k++) _input[row+_setBits[k]] = 1.0d;
+					}
+
+					multiplyBlocked(_input, count, _output);
+
+					for(int p=0; p<count; p++) {
+						set_targetVector(_labelIds[chunk+first+p], _targetVector);
+						int row      = p * _noOfOutputs;
+						int errorRow = (first+p) * _noOfOutputs;
+						for(int o=0; o<_noOfOutputs; o++) {
+							_output[row+o]      = _activationFunction.getFunctionResult(_output[row+o]);
+							_errors[errorRow+o] = ( _targetVector[o] - _output[row+o] ) * _epsilon;
+						}
+						squaredError += squaredError(_output, row, _targetVector);
+					}
+				}
+
+				// Gewichtsänderung: X^T x E. Da die Inputs nur 0 oder 1 sind, ist Zeile i die Summe der Fehler der Bitmuster, in denen Input i aktiv ist.
+				for(int i=0; i<_noOfInputs; i++) {
+					if(_firstPattern[i]==_firstPattern[i+1]) continue;
+					DeltaRule.sumErrors(_errors, _noOfOutputs, _patternsOfInput, _firstPattern[i], _firstPattern[i+1], _deltaWeigths, i*_noOfOutputs);
+					if(!_changed[i]) {
+						_changed[i] = true;
+						_changedRows[noOfChangedRows++] = i;
+					}
+				}
+			}
+
+			// Jede geänderte Zeile der Gewichtsmatrix einmal je Gruppe anpassen.
+			for(int k=0; k<noOfChangedRows; k++) {
+				int i = _changedRows[k];
+				System.arraycopy(_deltaWeigths, i*_noOfOutputs, _rowDelta, 0, _noOfOutputs);
+				Arrays.fill(_deltaWeigths, i*_noOfOutputs, (i+1)*_noOfOutputs, 0d);
+				_changed[i] = false;
+				_row[0] = i;
+				_weigths.addToRows(_row, 1, _rowDelta);
+			}
+			_weigthsVersion++;
+			return squaredError;
+		}
+
+	}
+
+	/**
+	 * Lässt einen Bereich von Teilen ihre Deltas ermitteln und summiert die Puffer anschließend als Baum auf:
+	 * Der Bereich wird halbiert, beide Hälften werden parallel bearbeitet und der Puffer der rechten Hälfte 
+	 * wird auf den der linken addiert. Die Form des Baumes hängt nur von der Anzahl der Teile ab.
+	 */
+	private class ShardReduction extends RecursiveAction {
+
+		private static final long serialVersionUID = -3104927365023340331L;
+
+		private final TrainingShard[] _shards;
+		private final int             _from;
+		private final int             _to;
+		private final Pattern[]       _patterns;
+		private final int[]           _labelIds;
+		private final int             _count;
+
+		/**
+		 * @param shards
+		 * @param from Index des ersten Teils (einschließlich).
+		 * @param to Index des letzten Teils (ausschließlich).
+		 * @param patterns Bitmuster der aktuellen Epoche.
+		 * @param labelIds Label-Id jedes Bitmusters.
+		 * @param count Anzahl der Bitmuster.
+		 */
+		ShardReduction(TrainingShard[] shards, int from, int to, Pattern[] patterns, int[] labelIds, int count) {
+			_shards   = shards;
+			_from     = from;
+			_to       = to;
+			_patterns = patterns;
+			_labelIds = labelIds;
+			_count    = count;
+		}
+
+		@Override
+		protected void compute() {
+			if(_to-_from==1) {
+				int first = (int) ( (long) _from * _count / _shards.length );
+				int last  = (int) ( (long) _to   * _count / _shards.length );
+				try {
+					_shards[_from].learn(_patterns, _labelIds, first, last);
+				} catch (InappropriateDataException e) {
+					throw new ShardFailure(e);
+				}
+				return;
+			}
+
+			int middle = (_from+_to) >>> 1;
+			ShardReduction left  = new ShardReduction(_shards, _from, middle, _patterns, _labelIds, _count);
+			ShardReduction right = new ShardReduction(_shards, middle, _to, _patterns, _labelIds, _count);
+			left.fork();
+			right.compute();
+			left.join();
+
+			double[] sum   = _shards[_from]._deltaWeigths;
+			double[] other = _shards[middle]._deltaWeigths;
+			if(WeightMatrix.VECTORIZED) {
+				VectorKernels.add(sum, other);
+				return;
+			}
+			for(int i=0; i<sum.length; i++) {
+				sum[i] += other[i];
+			}
+		}
+
 	}
 
 	/**
-	 * Sucht das Output-Neuron mit dem höchsten Ausgangswert.
-	 * Liefert die semantische Bedeutung dieses Neurons zurück.
-	 * Falls es mehrere Output-Neuronen gibt, deren Ausgangswert gleich dem höchsten Ausgangswert ist: Liefert die semantische Bedeutung des Neurons mit dem niedrigsten Index.
-	 * @return Antwort des Netzes.
+	 * Ein Thread des asynchronen Online-Learnings. Holt Bitmuster aus der gemeinsamen Warteschlange, bis diese leer ist,
+	 * und addiert die Deltas direkt auf die Gewichtsmatrix. Liefert die Summe der quadratischen Fehler.
 	 */
-	private String fetchAnswer() {
-		double maxValue=Double.NEGATIVE_INFINITY;
-		int    maxValueIndex=-1;
-		for(int i=0; i<_outputVector.getDimension(); i++) {
-			if(_outputVector.getEntry(i)>maxValue) {
-				maxValueIndex=i;
-				maxValue=_outputVector.getEntry(i);
+	private class AsynchronousWorker implements Callable<Double> {
+
+		private final Workspace     _workspace    = new Workspace(_noOfInputs, _noOfOutputs);
+		private final double[]      _targetVector = new double[_noOfOutputs];
+		private final double[]      _errorVector  = new double[_noOfOutputs];
+		private final Pattern[]     _patterns;
+		private final int[]         _labelIds;
+		private final AtomicInteger _cursor;
+
+		/**
+		 * @param patterns Warteschlange: Die Bitmuster der aktuellen Epoche, in der Reihenfolge, in der sie gelernt werden sollen.
+		 * @param labelIds Label-Id jedes Bitmusters der Warteschlange.
+		 * @param cursor Index des nächsten zu lernenden Bitmusters.
+		 */
+		AsynchronousWorker(Pattern[] patterns, int[] labelIds, AtomicInteger cursor) {
+			_patterns = patterns;
+			_labelIds = labelIds;
+			_cursor   = cursor;
+		}
+
+		@Override
+		public Double call() throws InappropriateDataException {
+			double squaredError = 0d;
+			int index;
+			while( (index = _cursor.getAndIncrement()) < _patterns.length ) {
+				set_targetVector(_labelIds[index], _targetVector);
+				_workspace.set_inputVector_activationState(_patterns[index]);
+				_activationFunction.calculate(_weigths, _workspace);
+
+				double[] output = _workspace._outputVector;
+				for(int o=0; o<_noOfOutputs; o++) {
+					double difference = _targetVector[o] - output[o];
+					squaredError     += difference * difference;
+					_errorVector[o]   = difference * _epsilon;
+				}
+				_weigths.addToRows(_workspace._activeInputs, _workspace._noOfActiveInputs, _errorVector); // Bewusst ohne Synchronisation.
 			}
+			return squaredError;
 		}
-		return _semantic[maxValueIndex];
+
+	}
+
+	/**
+	 * Transportiert eine InappropriateDataException aus einem Thread des zerlegten Trainings.
+	 */
+	private static class ShardFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 8290544306927513380L;
+
+		ShardFailure(InappropriateDataException cause) {
+			super(cause);
+		}
+
 	}
 
 }
@@ -0,0 +1,281 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Unveränderlicher Schnappschuss eines trainierten PatternAssociators.
+ * Die Gewichte werden beim Erzeugen kopiert; spätere Trainingsläufe des PatternAssociators wirken sich nicht aus.
+ * Alle Methoden sind reentrant: Der Arbeitsspeicher wird entweder vom Aufrufer übergeben oder je Thread verwaltet.
+ * Ein PatternClassifier kann daher von beliebig vielen Threads gleichzeitig benutzt werden.
+ * @author Wolfgang Bongartz
+ */
+public final class PatternClassifier implements Classifier {
+
+	private static final int MODEL_MAGIC   = 0x4E4E344D; // "NN4M"
+	private static final int MODEL_VERSION = 2; // Version 1 enthielt noch keine Genauigkeit und immer double-Gewichte.
+
+	private final int                     _noOfInputs;
+	private final int                     _noOfOutputs;
+	private final WeightMatrix            _weigths;
+	private final String[]                _semantic;
+	private final ActivationFunction      _activationFunction;
+	private final ThreadLocal<Workspace>  _workspace;
+	private final MatchMetrics            _metrics; // Falls NULL, wird die Erkennung nicht vermessen.
+
+	/**
+	 * @param noOfInputs Anzahl der Input-Neuronen.
+	 * @param noOfOutputs Anzahl der Output-Neuronen.
+	 * @param weigths Gewichtsmatrix. Wird samt Genauigkeit kopiert.
+	 * @param semantic Semantische Bedeutung der Output-Neuronen. Wird kopiert.
+	 * @param activationFunction Aktivierungsfunktion. Es wird nur getFunctionResult() benutzt, das keinen Zustand verändert.
+	 * @param metrics Erfasst die Dauer jeder Erkennung. Darf NULL sein.
+	 */
+	PatternClassifier(int noOfInputs, int noOfOutputs, WeightMatrix weigths, String[] semantic, ActivationFunction activationFunction, MatchMetrics metrics) {
+		if(weigths==null || weigths._noOfInputs!=noOfInputs || weigths._noOfOutputs!=noOfOutputs) throw new IllegalArgumentException();
+		if(semantic==null || semantic.length<noOfOutputs) throw new IllegalArgumentException();
+		if(activationFunction==null) throw new IllegalArgumentException("Keine Aktivierungsfunktion angegeben!");
+		_noOfInputs         = noOfInputs;
+		_noOfOutputs        = noOfOutputs;
+		_weigths            = weigths.copy();
+		_semantic           = Arrays.copyOf(semantic, semantic.length);
+		_activationFunction = activationFunction;
+		_workspace          = ThreadLocal.withInitial(this::createWorkspace);
+		_metrics            = metrics;
+	}
+
+	/**
+	 * Erzeugt einen passenden Arbeitsspeicher für classify(Pattern, Workspace).
+	 * @return
+	 */
+	public Workspace createWorkspace() {
+		return new Workspace(_noOfInputs, _noOfOutputs);
+	}
+
+	/**
+	 * Liefert die Antwort des Netzes auf ein Bitmuster. Benutzt den Arbeitsspeicher des aufrufenden Threads.
+	 * @param pattern
+	 * @return
+	 * @throws InappropriateDataException 
+	 */
+	@Override
+	public String classify(Pattern pattern) throws InappropriateDataException {
+		return _semantic[classifyIndex(pattern, _workspace.get())];
+	}
+
+	/**
+	 * Liefert die Antwort des Netzes auf ein Bitmuster.
+	 * @param pattern
+	 * @param workspace Arbeitsspeicher, siehe createWorkspace(). Darf nicht gleichzeitig von einem anderen Thread benutzt werden.
+	 * @return
+	 * @throws InappropriateDataException 
+	 */
+	public String classify(Pattern pattern, Workspace workspace) throws InappropriateDataException {
+		return _semantic[classifyIndex(pattern, workspace)];
+	}
+
+	/**
+	 * Liefert den Index des Output-Neurons, das auf ein Bitmuster am stärksten reagiert. Benutzt den Arbeitsspeicher des aufrufenden Threads.
+	 * @param pattern
+	 * @return Siehe get_semantic(int).
+	 * @throws InappropriateDataException 
+	 */
+	@Override
+	public int classifyIndex(Pattern pattern) throws InappropriateDataException {
+		return classifyIndex(pattern, _workspace.get());
+	}
+
+	/**
+	 * Liefert den Index des Output-Neurons, das auf ein Bitmuster am stärksten reagiert.
+	 * @param pattern
+	 * @param workspace Arbeitsspeicher, siehe createWorkspace(). Darf nicht gleichzeitig von einem anderen Thread benutzt werden.
+	 * @return Siehe get_semantic(int).
+	 * @throws InappropriateDataException 
+	 */
+	public int classifyIndex(Pattern pattern, Workspace workspace) throws InappropriateDataException {
+		if(pattern==null) throw new IllegalArgumentException();
+		if(workspace==null || workspace._outputVector.length!=_noOfOutputs || workspace._activeInputs.length!=_noOfInputs) throw new IllegalArgumentException("Arbeitsspeicher passt nicht zum Netz!");
+		if(_metrics!=null) return classifyIndexMeasured(pattern, workspace);
+		workspace.set_inputVector_activationState(pattern);
+		_activationFunction.calculate(_weigths, workspace);
+		return workspace.fetchAnswerIndex();
+	}
+
+	/**
+	 * Wie classifyIndex(), erfasst aber zusätzlich die Dauer in den MatchMetrics.
+	 */
+	private int classifyIndexMeasured(Pattern pattern, Workspace workspace) throws InappropriateDataException {
+		long start = System.nanoTime();
+		try {
+			workspace.set_inputVector_activationState(pattern);
+			_activationFunction.calculate(_weigths, workspace);
+			int retVal = workspace.fetchAnswerIndex();
+			_metrics.recordMatch(System.nanoTime() - start);
+			return retVal;
+		} catch (InappropriateDataException | RuntimeException e) {
+			_metrics.recordFailure();
+			throw e;
+		}
+	}
+
+	/**
+	 * Erzeugt eine quantisierte Variante des Netzes, die mit gepackten Bits und Long.bitCount() erkennt.
+	 * @param quantization
+	 * @return
+	 */
+	public BinaryClassifier quantize(BinaryClassifier.Quantization quantization) {
+		return new BinaryClassifier(_weigths, _semantic, quantization);
+	}
+
+	/**
+	 * Liefert die semantische Bedeutung eines Output-Neurons.
+	 * @param index
+	 * @return
+	 */
+	@Override
+	public String get_semantic(int index) {
+		return _semantic[index];
+	}
+
+	/**
+	 * Schreibt das Netz in eine binäre Modelldatei.
+	 * Aufbau: Kennung, Version, Anzahl der Input- und Output-Neuronen, Name der Aktivierungsfunktion, Genauigkeit der Gewichte,
+	 * Anzahl und Texte der semantischen Bedeutungen, danach die Gewichtsmatrix als zusammenhängender Block (double oder float).
+	 * Texte werden als Länge in Byte gefolgt von UTF-8 abgelegt. Alle Zahlen in Big-Endian.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		if(file==null) throw new IllegalArgumentException();
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(MODEL_MAGIC);
+			out.writeInt(MODEL_VERSION);
+			out.writeInt(_noOfInputs);
+			out.writeInt(_noOfOutputs);
+			writeString(out, _activationFunction.getName());
+			writeString(out, _weigths.get_precision().name());
+			out.writeInt(_semantic.length);
+			for(String label: _semantic) writeString(out, label);
+			_weigths.writeTo(out);
+		} finally {
+			if(out!=null) out.close();
+		}
+	}
+
+	/**
+	 * Lädt ein mit save() geschriebenes Netz. Die Datei wird in den Speicher eingeblendet, 
+	 * die Gewichtsmatrix wird als Block übernommen. Modelldateien der Version 1 werden mit double-Gewichten gelesen.
+	 * @param file
+	 * @return
+	 * @throws IOException Falls die Datei nicht gelesen werden kann oder keine gültige Modelldatei ist.
+	 */
+	public static PatternClassifier load(File file) throws IOException {
+		if(file==null) throw new IllegalArgumentException();
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt()!=MODEL_MAGIC) throw new IOException("Keine Modelldatei: " + file);
+			int version = buffer.getInt();
+			if(version<1 || version>MODEL_VERSION) throw new IOException("Unbekannte Version der Modelldatei: " + file);
+			int noOfInputs  = buffer.getInt();
+			int noOfOutputs = buffer.getInt();
+			if(noOfInputs<1 || noOfOutputs<1) throw new IOException("Ungültige Dimensionen in der Modelldatei: " + file);
+			ActivationFunction activationFunction;
+			try {
+				activationFunction = ActivationFunction.forName(readString(buffer));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + " " + file);
+			}
+			Precision precision = Precision.DOUBLE;
+			if(version>=2) {
+				try {
+					precision = Precision.valueOf(readString(buffer));
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Unbekannte Genauigkeit in der Modelldatei: " + file);
+				}
+			}
+			int noOfLabels = buffer.getInt();
+			// Jede Bedeutung belegt wenigstens ihre Längenangabe.
+			if(noOfLabels<0 || noOfLabels>buffer.remaining()/Integer.BYTES) throw new IOException("Ungültige Anzahl semantischer Bedeutungen in der Modelldatei: " + file);
+			String[] semantic = new String[noOfLabels];
+			if(semantic.length<noOfOutputs) throw new IOException("Zu wenige semantische Bedeutungen in der Modelldatei: " + file);
+			for(int i=0; i<semantic.length; i++) semantic[i] = readString(buffer);
+			// Die Gewichtsmatrix muss vollständig in der Datei liegen, bevor sie angelegt wird (Produkt in long, z.B. 65536 x 65536).
+			if((long) noOfInputs * noOfOutputs * precision.get_bytesPerWeight() > buffer.remaining()) throw new IOException("Gewichtsmatrix passt nicht zu den Dimensionen in der Modelldatei: " + file);
+			WeightMatrix weigths = WeightMatrix.create(precision, noOfInputs, noOfOutputs);
+			weigths.readFrom(buffer);
+			return new PatternClassifier(noOfInputs, noOfOutputs, weigths, semantic, activationFunction, null);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Modelldatei ist unvollständig: " + file);
+		} finally {
+			if(channel!=null) channel.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if(length<0 || length>buffer.remaining()) throw new IOException("Ungültige Textlänge in der Modelldatei.");
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return Anzahl der Input-Neuronen.
+	 */
+	public int get_noOfInputs() {
+		return _noOfInputs;
+	}
+
+	/**
+	 * @return Anzahl der Output-Neuronen.
+	 */
+	@Override
+	public int get_noOfOutputs() {
+		return _noOfOutputs;
+	}
+
+	/**
+	 * @return Gewichtsmatrix. Darf nicht verändert werden.
+	 */
+	WeightMatrix get_weigths() {
+		return _weigths;
+	}
+
+	/**
+	 * @return Semantische Bedeutungen aller Output-Neuronen. Darf nicht verändert werden.
+	 */
+	String[] get_semanticTable() {
+		return _semantic;
+	}
+
+	/**
+	 * @return Genauigkeit der Gewichte.
+	 */
+	public Precision get_precision() {
+		return _weigths.get_precision();
+	}
+
+	/**
+	 * @return Aktivierungsfunktion.
+	 */
+	ActivationFunction get_activationFunction() {
+		return _activationFunction;
+	}
+
+}
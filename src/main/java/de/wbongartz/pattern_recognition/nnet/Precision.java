@@ -0,0 +1,26 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * Genauigkeit, mit der die Gewichte des Netzes gespeichert werden.
+ * Gerechnet wird in beiden Fällen mit double; bei FLOAT werden nur die gespeicherten Gewichte gerundet.
+ * @author Wolfgang Bongartz
+ */
+public enum Precision {
+	/** 64 Bit je Gewicht. */
+	DOUBLE(Double.BYTES),
+	/** 32 Bit je Gewicht. Halbiert den Speicherbedarf der Gewichtsmatrix und die bei jeder Erkennung gelesene Datenmenge. */
+	FLOAT(Float.BYTES);
+
+	private final int _bytesPerWeight;
+
+	private Precision(int bytesPerWeight) {
+		_bytesPerWeight = bytesPerWeight;
+	}
+
+	/**
+	 * @return Speicherbedarf eines Gewichts in Byte.
+	 */
+	public int get_bytesPerWeight() {
+		return _bytesPerWeight;
+	}
+}
@@ -0,0 +1,64 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * Kriterien, nach denen das Training vor Ablauf aller Epochen beendet wird (siehe PatternAssociator.train()).
+ * Alle Kriterien sind zunächst abgeschaltet; das Training endet, sobald eines der eingeschalteten Kriterien erfüllt ist.
+ * Als Fehler einer Epoche gilt der mittlere quadratische Fehler der Output-Neuronen über alle Bitmuster der Epoche.
+ * @author Wolfgang Bongartz
+ */
+public final class StoppingCriteria {
+
+	private double _targetError     = -1d;	// Abgeschaltet, solange negativ.
+	private int    _patience        = 0;	// Abgeschaltet, solange 0.
+	private double _minImprovement  = 0d;
+	private double _maxWeightChange = -1d;	// Abgeschaltet, solange negativ.
+
+	/**
+	 * Das Training endet, sobald der Fehler einer Epoche den Zielwert erreicht oder unterschreitet.
+	 * @param targetError
+	 */
+	public void setTargetError(double targetError) {
+		if(targetError<0d) throw new IllegalArgumentException();
+		_targetError = targetError;
+	}
+
+	/**
+	 * Das Training endet, wenn sich der Fehler über die angegebene Anzahl aufeinander folgender Epochen 
+	 * nicht um mehr als minImprovement gegenüber dem Bezugsfehler verbessert hat. Bezugsfehler ist der Fehler der letzten 
+	 * Epoche, die eine solche Verbesserung gebracht hat; kleinere Verbesserungen verschieben ihn nicht.
+	 * @param patience Anzahl der Epochen ohne Verbesserung. 0 schaltet das Kriterium ab.
+	 * @param minImprovement Geringste Verbesserung, die als Verbesserung zählt.
+	 */
+	public void setPatience(int patience, double minImprovement) {
+		if(patience<0 || minImprovement<0d) throw new IllegalArgumentException();
+		_patience       = patience;
+		_minImprovement = minImprovement;
+	}
+
+	/**
+	 * Das Training endet, sobald sich die Gewichtsmatrix in einer Epoche um höchstens diesen Betrag 
+	 * (euklidische Norm der Änderung) verändert hat.
+	 * @param maxWeightChange
+	 */
+	public void setMaxWeightChange(double maxWeightChange) {
+		if(maxWeightChange<0d) throw new IllegalArgumentException();
+		_maxWeightChange = maxWeightChange;
+	}
+
+	double get_targetError() {
+		return _targetError;
+	}
+
+	int get_patience() {
+		return _patience;
+	}
+
+	double get_minImprovement() {
+		return _minImprovement;
+	}
+
+	double get_maxWeightChange() {
+		return _maxWeightChange;
+	}
+
+}
@@ -0,0 +1,16 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * Wird vom PatternAssociator nach jeder Trainings-Epoche benachrichtigt (siehe PatternAssociator.addTrainingListener()).
+ * Die Benachrichtigung erfolgt im Thread, der das Training gestartet hat.
+ * @author Wolfgang Bongartz
+ */
+public interface TrainingListener {
+
+	/**
+	 * Eine Epoche ist beendet.
+	 * @param statistics Kennzahlen der Epoche.
+	 */
+	void epochFinished(EpochStatistics statistics);
+
+}
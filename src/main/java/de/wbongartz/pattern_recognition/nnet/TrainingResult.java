@@ -0,0 +1,54 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+/**
+ * Ergebnis eines Trainingslaufs (siehe PatternAssociator.train()).
+ * @author Wolfgang Bongartz
+ */
+public final class TrainingResult {
+
+	/**
+	 * Grund für das Ende des Trainings.
+	 */
+	public enum StopReason {
+		/** Alle Epochen wurden durchlaufen. */
+		EPOCHS,
+		/** Der Zielwert für den Fehler wurde erreicht. */
+		TARGET_ERROR,
+		/** Der Fehler hat sich über mehrere Epochen nicht mehr verbessert. */
+		NO_IMPROVEMENT,
+		/** Die Gewichte haben sich kaum noch verändert. */
+		WEIGHTS_CONVERGED
+	}
+
+	private final int        _noOfEpochs;
+	private final double     _error;
+	private final StopReason _stopReason;
+
+	TrainingResult(int noOfEpochs, double error, StopReason stopReason) {
+		_noOfEpochs = noOfEpochs;
+		_error      = error;
+		_stopReason = stopReason;
+	}
+
+	/**
+	 * @return Anzahl der tatsächlich durchlaufenen Epochen.
+	 */
+	public int get_noOfEpochs() {
+		return _noOfEpochs;
+	}
+
+	/**
+	 * @return Mittlerer quadratischer Fehler der letzten Epoche. NaN, falls keine Epoche durchlaufen wurde.
+	 */
+	public double get_error() {
+		return _error;
+	}
+
+	/**
+	 * @return Grund für das Ende des Trainings.
+	 */
+	public StopReason get_stopReason() {
+		return _stopReason;
+	}
+
+}
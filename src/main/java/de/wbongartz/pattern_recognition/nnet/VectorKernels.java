@@ -0,0 +1,218 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import jdk.incubator.vector.*;
+
+/**
+ * Vektorisierte Varianten der inneren Schleifen von WeightMatrix und DeltaRule (jdk.incubator.vector).
+ * Jeder Vektor umfasst mehrere benachbarte Output-Neuronen; die Summationsreihenfolge je Output-Neuron
+ * ist dieselbe wie in der skalaren Variante, die Ergebnisse sind daher bitgleich.
+ * Die Klasse darf nur benutzt werden, wenn WeightMatrix.VECTORIZED gesetzt ist. Andernfalls fehlt
+ * das Modul zur Laufzeit und die Klasse kann nicht geladen werden.
+ * @author Wolfgang Bongartz
+ */
+final class VectorKernels {
+
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	// Gleich viele float-Werte wie DOUBLES double-Werte, damit sich die Lanes eins zu eins umwandeln lassen.
+	private static final VectorSpecies<Float>  FLOATS  = VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize()/2));
+
+	private VectorKernels() {
+	}
+
+	/**
+	 * target[o] += source[row+o] für die Zeilen rows[0..count) in dieser Reihenfolge.
+	 */
+	static void sumRows(double[] source, int noOfOutputs, int[] rows, int count, double[] target) {
+		sumRows(source, noOfOutputs, rows, 0, count, target, 0);
+	}
+
+	/**
+	 * target[offset+o] += source[row+o] für die Zeilen rows[from..to) in dieser Reihenfolge.
+	 */
+	static void sumRows(double[] source, int noOfOutputs, int[] rows, int from, int to, double[] target, int offset) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=from; k<to; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, target, offset+o)
+					.add(DoubleVector.fromArray(DOUBLES, source, row+o))
+					.intoArray(target, offset+o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[offset+o] += source[row+o];
+			}
+		}
+	}
+
+	/**
+	 * Wie sumRows(double[], ...), die Zeilen liegen aber als float vor.
+	 */
+	static void sumRows(float[] source, int noOfOutputs, int[] rows, int count, double[] target) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=0; k<count; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, target, o)
+					.add(toDoubles(source, row+o))
+					.intoArray(target, o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[o] += source[row+o];
+			}
+		}
+	}
+
+	/**
+	 * target[row+o] += values[o] für die Zeilen rows[0..count).
+	 */
+	static void addToRows(double[] target, int noOfOutputs, int[] rows, int count, double[] values) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=0; k<count; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, target, row+o)
+					.add(DoubleVector.fromArray(DOUBLES, values, o))
+					.intoArray(target, row+o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[row+o] += values[o];
+			}
+		}
+	}
+
+	/**
+	 * Wie addToRows(double[], ...), die Summe wird aber in double gebildet und als float gespeichert.
+	 */
+	static void addToRows(float[] target, int noOfOutputs, int[] rows, int count, double[] values) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=0; k<count; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				toFloats(toDoubles(target, row+o).add(DoubleVector.fromArray(DOUBLES, values, o)), target, row+o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[row+o] = (float) (target[row+o] + values[o]);
+			}
+		}
+	}
+
+	/**
+	 * target[row+o] += delta[row+o] für die Zeilen rows[0..count).
+	 */
+	static void addRows(double[] target, int noOfOutputs, int[] rows, int count, double[] delta) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=0; k<count; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, target, row+o)
+					.add(DoubleVector.fromArray(DOUBLES, delta, row+o))
+					.intoArray(target, row+o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[row+o] += delta[row+o];
+			}
+		}
+	}
+
+	/**
+	 * Wie addRows(double[], ...), die Summe wird aber in double gebildet und als float gespeichert.
+	 */
+	static void addRows(float[] target, int noOfOutputs, int[] rows, int count, double[] delta) {
+		int bound = DOUBLES.loopBound(noOfOutputs);
+		for(int k=0; k<count; k++) {
+			int row = rows[k] * noOfOutputs;
+			int o = 0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				toFloats(toDoubles(target, row+o).add(DoubleVector.fromArray(DOUBLES, delta, row+o)), target, row+o);
+			}
+			for(; o<noOfOutputs; o++) {
+				target[row+o] = (float) (target[row+o] + delta[row+o]);
+			}
+		}
+	}
+
+	/**
+	 * output[outputRow+o] += input[inputRow+i] * weigths[i*noOfOutputs+o] für i in [i0,i1) und o in [o0,o1).
+	 * Multiplikation und Addition werden wie in der skalaren Variante getrennt gerundet (kein FMA).
+	 */
+	static void multiplyTile(double[] weigths, int noOfOutputs, double[] input, int inputRow, int i0, int i1, int o0, int o1, double[] output, int outputRow) {
+		int bound = o0 + DOUBLES.loopBound(o1-o0);
+		for(int i=i0; i<i1; i++) {
+			double activation = input[inputRow+i];
+			int    weigthRow  = i * noOfOutputs;
+			int o = o0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, output, outputRow+o)
+					.add(DoubleVector.fromArray(DOUBLES, weigths, weigthRow+o).mul(activation))
+					.intoArray(output, outputRow+o);
+			}
+			for(; o<o1; o++) {
+				output[outputRow+o] += activation * weigths[weigthRow+o];
+			}
+		}
+	}
+
+	/**
+	 * Wie multiplyTile(double[], ...), die Gewichte liegen aber als float vor.
+	 */
+	static void multiplyTile(float[] weigths, int noOfOutputs, double[] input, int inputRow, int i0, int i1, int o0, int o1, double[] output, int outputRow) {
+		int bound = o0 + DOUBLES.loopBound(o1-o0);
+		for(int i=i0; i<i1; i++) {
+			double activation = input[inputRow+i];
+			int    weigthRow  = i * noOfOutputs;
+			int o = o0;
+			for(; o<bound; o+=DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, output, outputRow+o)
+					.add(toDoubles(weigths, weigthRow+o).mul(activation))
+					.intoArray(output, outputRow+o);
+			}
+			for(; o<o1; o++) {
+				output[outputRow+o] += activation * weigths[weigthRow+o];
+			}
+		}
+	}
+
+	/**
+	 * target[i] += delta[i] für alle Einträge.
+	 */
+	static void add(double[] target, double[] delta) {
+		int bound = DOUBLES.loopBound(target.length);
+		int i = 0;
+		for(; i<bound; i+=DOUBLES.length()) {
+			DoubleVector.fromArray(DOUBLES, target, i)
+				.add(DoubleVector.fromArray(DOUBLES, delta, i))
+				.intoArray(target, i);
+		}
+		for(; i<target.length; i++) {
+			target[i] += delta[i];
+		}
+	}
+
+	/**
+	 * Wie add(double[], double[]), die Summe wird aber in double gebildet und als float gespeichert.
+	 */
+	static void add(float[] target, double[] delta) {
+		int bound = DOUBLES.loopBound(target.length);
+		int i = 0;
+		for(; i<bound; i+=DOUBLES.length()) {
+			toFloats(toDoubles(target, i).add(DoubleVector.fromArray(DOUBLES, delta, i)), target, i);
+		}
+		for(; i<target.length; i++) {
+			target[i] = (float) (target[i] + delta[i]);
+		}
+	}
+
+	private static DoubleVector toDoubles(float[] source, int offset) {
+		return (DoubleVector) FloatVector.fromArray(FLOATS, source, offset).convertShape(VectorOperators.F2D, DOUBLES, 0);
+	}
+
+	private static void toFloats(DoubleVector source, float[] target, int offset) {
+		((FloatVector) source.convertShape(VectorOperators.D2F, FLOATS, 0)).intoArray(target, offset);
+	}
+
+}
@@ -0,0 +1,369 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Gewichtsmatrix des Netzes, zeilenweise abgelegt: Das Gewicht von Input i zu Output o steht an Position i*noOfOutputs+o.
+ * Die rechenintensiven Schleifen liegen in den Unterklassen, damit sie direkt auf dem jeweiligen Array arbeiten.
+ * Summen und Deltas werden immer in double berechnet.
+ * Ist das Modul jdk.incubator.vector vorhanden, laufen die Schleifen über die Output-Neuronen vektorisiert (siehe VectorKernels).
+ * @author Wolfgang Bongartz
+ */
+abstract class WeightMatrix {
+
+	/**
+	 * TRUE, falls die vektorisierten Schleifen benutzt werden. Mit -Dnn4.vector=false lässt sich die skalare Variante erzwingen.
+	 */
+	static final boolean VECTORIZED = isVectorApiAvailable();
+
+	final int _noOfInputs;
+	final int _noOfOutputs;
+
+	WeightMatrix(int noOfInputs, int noOfOutputs) {
+		_noOfInputs  = noOfInputs;
+		_noOfOutputs = noOfOutputs;
+	}
+
+	/**
+	 * Prüft, ob das Modul jdk.incubator.vector geladen ist (z.B. per --add-modules jdk.incubator.vector).
+	 * VectorKernels wird nur dann geladen, wenn dies zutrifft.
+	 * @return
+	 */
+	private static boolean isVectorApiAvailable() {
+		if("false".equals(System.getProperty("nn4.vector"))) return false;
+		return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	}
+
+	/**
+	 * Erzeugt eine Gewichtsmatrix, deren Einträge alle 0 sind.
+	 * @param precision
+	 * @param noOfInputs
+	 * @param noOfOutputs
+	 * @return
+	 */
+	static WeightMatrix create(Precision precision, int noOfInputs, int noOfOutputs) {
+		if(precision==Precision.FLOAT) return new FloatWeightMatrix(noOfInputs, noOfOutputs);
+		return new DoubleWeightMatrix(noOfInputs, noOfOutputs);
+	}
+
+	/**
+	 * @return Anzahl der Einträge.
+	 */
+	int size() {
+		return _noOfInputs * _noOfOutputs;
+	}
+
+	abstract Precision get_precision();
+
+	abstract double get(int index);
+
+	/**
+	 * Netto-Input aller Output-Neuronen: output = Summe der Zeilen der aktiven Input-Neuronen.
+	 * Je Output-Neuron werden die Zeilen in der Reihenfolge von rows aufsummiert.
+	 * @param rows Indizes der aktiven Input-Neuronen.
+	 * @param count Anzahl der aktiven Input-Neuronen.
+	 * @param output Nimmt die Netto-Inputs auf.
+	 */
+	abstract void sumRows(int[] rows, int count, double[] output);
+
+	/**
+	 * Multipliziert eine Kachel der Input-Matrix mit der Gewichtsmatrix (siehe PatternAssociator.matchAll()):
+	 * output[outputRow+o] += input[inputRow+i] * Gewicht(i,o) für i in [i0,i1) und o in [o0,o1).
+	 */
+	abstract void multiplyTile(double[] input, int inputRow, int i0, int i1, int o0, int o1, double[] output, int outputRow);
+
+	/**
+	 * Addiert eine Matrix gleicher Größe.
+	 * @param delta
+	 */
+	abstract void add(double[] delta);
+
+	/**
+	 * Addiert values auf die Zeilen der aktiven Input-Neuronen. Ohne Synchronisation, siehe PatternAssociator.trainAsynchronously().
+	 * @param rows
+	 * @param count
+	 * @param values Ein Eintrag je Output-Neuron.
+	 */
+	abstract void addToRows(int[] rows, int count, double[] values);
+
+	/**
+	 * Addiert die angegebenen Zeilen einer Matrix gleicher Größe; je Eintrag dasselbe Ergebnis wie add().
+	 * @param rows Indizes der Zeilen (Input-Neuronen).
+	 * @param count Anzahl der gültigen Einträge in rows.
+	 * @param delta Zeilenweise abgelegte Matrix.
+	 */
+	abstract void addRows(int[] rows, int count, double[] delta);
+
+	/**
+	 * Kopiert alle Einträge in ein double-Array.
+	 * @param target
+	 */
+	abstract void copyTo(double[] target);
+
+	/**
+	 * @return Unabhängige Kopie.
+	 */
+	abstract WeightMatrix copy();
+
+	/**
+	 * Schreibt alle Einträge in der gespeicherten Genauigkeit.
+	 * @param out
+	 * @throws IOException
+	 */
+	abstract void writeTo(DataOutput out) throws IOException;
+
+	/**
+	 * Liest alle Einträge, wie sie writeTo() geschrieben hat.
+	 * @param buffer
+	 */
+	abstract void readFrom(ByteBuffer buffer);
+
+	/**
+	 * @param other
+	 * @return Euklidischer Abstand zu other.
+	 */
+	double distanceTo(double[] other) {
+		double sum = 0d;
+		for(int i=0; i<other.length; i++) {
+			double difference = get(i) - other[i];
+			sum += difference * difference;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * Gewichte in 64 Bit.
+	 */
+	static final class DoubleWeightMatrix extends WeightMatrix {
+
+		private final double[] _weigths;
+
+		DoubleWeightMatrix(int noOfInputs, int noOfOutputs) {
+			super(noOfInputs, noOfOutputs);
+			_weigths = new double[noOfInputs * noOfOutputs];
+		}
+
+		@Override
+		Precision get_precision() {
+			return Precision.DOUBLE;
+		}
+
+		@Override
+		double get(int index) {
+			return _weigths[index];
+		}
+
+		@Override
+		void sumRows(int[] rows, int count, double[] output) {
+			int noOfOutputs = _noOfOutputs;
+			java.util.Arrays.fill(output, 0d);
+			if(VECTORIZED) {
+				VectorKernels.sumRows(_weigths, noOfOutputs, rows, count, output);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * noOfOutputs;
+				for(int o=0; o<noOfOutputs; o++) {
+					output[o] += _weigths[row+o];
+				}
+			}
+		}
+
+		@Override
+		void multiplyTile(double[] input, int inputRow, int i0, int i1, int o0, int o1, double[] output, int outputRow) {
+			if(VECTORIZED) {
+				VectorKernels.multiplyTile(_weigths, _noOfOutputs, input, inputRow, i0, i1, o0, o1, output, outputRow);
+				return;
+			}
+			for(int i=i0; i<i1; i++) {
+				double activation = input[inputRow+i];
+				int    weigthRow  = i * _noOfOutputs;
+				for(int o=o0; o<o1; o++) {
+					output[outputRow+o] += activation * _weigths[weigthRow+o];
+				}
+			}
+		}
+
+		@Override
+		void add(double[] delta) {
+			if(VECTORIZED) {
+				VectorKernels.add(_weigths, delta);
+				return;
+			}
+			for(int i=0; i<_weigths.length; i++) {
+				_weigths[i] += delta[i];
+			}
+		}
+
+		@Override
+		void addToRows(int[] rows, int count, double[] values) {
+			if(VECTORIZED) {
+				VectorKernels.addToRows(_weigths, _noOfOutputs, rows, count, values);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * _noOfOutputs;
+				for(int o=0; o<_noOfOutputs; o++) {
+					_weigths[row+o] += values[o];
+				}
+			}
+		}
+
+		@Override
+		void addRows(int[] rows, int count, double[] delta) {
+			if(VECTORIZED) {
+				VectorKernels.addRows(_weigths, _noOfOutputs, rows, count, delta);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * _noOfOutputs;
+				for(int o=row; o<row+_noOfOutputs; o++) {
+					_weigths[o] += delta[o];
+				}
+			}
+		}
+
+		@Override
+		void copyTo(double[] target) {
+			System.arraycopy(_weigths, 0, target, 0, _weigths.length);
+		}
+
+		@Override
+		WeightMatrix copy() {
+			DoubleWeightMatrix retVal = new DoubleWeightMatrix(_noOfInputs, _noOfOutputs);
+			System.arraycopy(_weigths, 0, retVal._weigths, 0, _weigths.length);
+			return retVal;
+		}
+
+		@Override
+		void writeTo(DataOutput out) throws IOException {
+			for(double weigth: _weigths) out.writeDouble(weigth);
+		}
+
+		@Override
+		void readFrom(ByteBuffer buffer) {
+			buffer.asDoubleBuffer().get(_weigths);
+		}
+
+	}
+
+	/**
+	 * Gewichte in 32 Bit. Änderungen werden in double berechnet und beim Speichern gerundet.
+	 */
+	static final class FloatWeightMatrix extends WeightMatrix {
+
+		private final float[] _weigths;
+
+		FloatWeightMatrix(int noOfInputs, int noOfOutputs) {
+			super(noOfInputs, noOfOutputs);
+			_weigths = new float[noOfInputs * noOfOutputs];
+		}
+
+		@Override
+		Precision get_precision() {
+			return Precision.FLOAT;
+		}
+
+		@Override
+		double get(int index) {
+			return _weigths[index];
+		}
+
+		@Override
+		void sumRows(int[] rows, int count, double[] output) {
+			int noOfOutputs = _noOfOutputs;
+			java.util.Arrays.fill(output, 0d);
+			if(VECTORIZED) {
+				VectorKernels.sumRows(_weigths, noOfOutputs, rows, count, output);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * noOfOutputs;
+				for(int o=0; o<noOfOutputs; o++) {
+					output[o] += _weigths[row+o];
+				}
+			}
+		}
+
+		@Override
+		void multiplyTile(double[] input, int inputRow, int i0, int i1, int o0, int o1, double[] output, int outputRow) {
+			if(VECTORIZED) {
+				VectorKernels.multiplyTile(_weigths, _noOfOutputs, input, inputRow, i0, i1, o0, o1, output, outputRow);
+				return;
+			}
+			for(int i=i0; i<i1; i++) {
+				double activation = input[inputRow+i];
+				int    weigthRow  = i * _noOfOutputs;
+				for(int o=o0; o<o1; o++) {
+					output[outputRow+o] += activation * _weigths[weigthRow+o];
+				}
+			}
+		}
+
+		@Override
+		void add(double[] delta) {
+			if(VECTORIZED) {
+				VectorKernels.add(_weigths, delta);
+				return;
+			}
+			for(int i=0; i<_weigths.length; i++) {
+				_weigths[i] = (float) (_weigths[i] + delta[i]);
+			}
+		}
+
+		@Override
+		void addToRows(int[] rows, int count, double[] values) {
+			if(VECTORIZED) {
+				VectorKernels.addToRows(_weigths, _noOfOutputs, rows, count, values);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * _noOfOutputs;
+				for(int o=0; o<_noOfOutputs; o++) {
+					_weigths[row+o] = (float) (_weigths[row+o] + values[o]);
+				}
+			}
+		}
+
+		@Override
+		void addRows(int[] rows, int count, double[] delta) {
+			if(VECTORIZED) {
+				VectorKernels.addRows(_weigths, _noOfOutputs, rows, count, delta);
+				return;
+			}
+			for(int k=0; k<count; k++) {
+				int row = rows[k] * _noOfOutputs;
+				for(int o=row; o<row+_noOfOutputs; o++) {
+					_weigths[o] = (float) (_weigths[o] + delta[o]);
+				}
+			}
+		}
+
+		@Override
+		void copyTo(double[] target) {
+			for(int i=0; i<_weigths.length; i++) {
+				target[i] = _weigths[i];
+			}
+		}
+
+		@Override
+		WeightMatrix copy() {
+			FloatWeightMatrix retVal = new FloatWeightMatrix(_noOfInputs, _noOfOutputs);
+			System.arraycopy(_weigths, 0, retVal._weigths, 0, _weigths.length);
+			return retVal;
+		}
+
+		@Override
+		void writeTo(DataOutput out) throws IOException {
+			for(float weigth: _weigths) out.writeFloat(weigth);
+		}
+
+		@Override
+		void readFrom(ByteBuffer buffer) {
+			buffer.asFloatBuffer().get(_weigths);
+		}
+
+	}
+
+}
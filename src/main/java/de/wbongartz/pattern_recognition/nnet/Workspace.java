@@ -0,0 +1,68 @@
+package de.wbongartz.pattern_recognition.nnet;
+
+import de.wbongartz.pattern_recognition.patterns.*;
+
+/**
+ * Arbeitsspeicher für die Berechnung der Aktivierungszustände eines Netzes.
+ * Enthält die aktiven Input-Neuronen und die Aktivierungszustände der Output-Neuronen.
+ * Ein Workspace darf immer nur von einem Thread gleichzeitig benutzt werden.
+ * @author Wolfgang Bongartz
+ */
+public final class Workspace {
+
+	final int[]    _activeInputs;     // Indizes der aktiven (auf 1 gesetzten) Input-Neuronen.
+	int            _noOfActiveInputs;
+	final double[] _outputVector;
+
+	/**
+	 * @param noOfInputs Anzahl der Input-Neuronen.
+	 * @param noOfOutputs Anzahl der Output-Neuronen.
+	 */
+	Workspace(int noOfInputs, int noOfOutputs) {
+		_activeInputs     = new int[noOfInputs];
+		_noOfActiveInputs = 0;
+		_outputVector     = new double[noOfOutputs];
+	}
+
+	/**
+	 * Setze die Aktivierungszustände der Input-Neuronen.
+	 * Bit (i,j) des Musters gehört zum Input-Neuron i*width+j. Da die Input-Neuronen nur die Zustände 
+	 * 0 und 1 kennen, werden nur die Indizes der aktiven Neuronen gespeichert.
+	 * @param pattern
+	 * @throws InappropriateDataException 
+	 */
+	void set_inputVector_activationState(Pattern pattern) throws InappropriateDataException {
+		int inputVectorSize = pattern.get_numberOfBits();
+		if( inputVectorSize != _activeInputs.length ) throw new InappropriateDataException("Größe des Bitmusters ist für das Netz nicht passend! Das Netz hat " + _activeInputs.length + " Eingangsneuronen. Das Bitmuster besteht aber aus " + inputVectorSize + " Bits.");
+		_noOfActiveInputs = pattern.get_setBits(_activeInputs);
+	}
+
+	/**
+	 * Sucht das Output-Neuron mit dem höchsten Ausgangswert.
+	 * Falls es mehrere Output-Neuronen gibt, deren Ausgangswert gleich dem höchsten Ausgangswert ist: Liefert den niedrigsten Index.
+	 * @return Index des Output-Neurons.
+	 */
+	int fetchAnswerIndex() {
+		return indexOfMaximum(_outputVector, 0, _outputVector.length);
+	}
+
+	/**
+	 * Liefert den Index (relativ zu offset) des höchsten Wertes. Bei mehreren gleich hohen Werten den niedrigsten Index.
+	 * @param values
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	static int indexOfMaximum(double[] values, int offset, int length) {
+		double maxValue=Double.NEGATIVE_INFINITY;
+		int    maxValueIndex=-1;
+		for(int i=0; i<length; i++) {
+			if(values[offset+i]>maxValue) {
+				maxValueIndex=i;
+				maxValue=values[offset+i];
+			}
+		}
+		return maxValueIndex;
+	}
+
+}
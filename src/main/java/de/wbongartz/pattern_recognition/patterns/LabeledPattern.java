@@ -0,0 +1,37 @@
+package de.wbongartz.pattern_recognition.patterns;
+
+/**
+ * Ein Bitmuster zusammen mit der Label-Id seiner Vorlage (siehe PatternSet.streamRandomizedWithLabels()).
+ * So kann die Auswertung Label-Ids vergleichen, ohne den Namen des Bitmusters nachzuschlagen.
+ * @author Wolfgang Bongartz
+ */
+public final class LabeledPattern {
+
+	private final Pattern _pattern;
+	private final int     _labelId;
+
+	/**
+	 * @param pattern
+	 * @param labelId Index des Namens im Wörterbuch des PatternSets, aus dem das Bitmuster stammt.
+	 */
+	public LabeledPattern(Pattern pattern, int labelId) {
+		if(pattern==null) throw new IllegalArgumentException();
+		_pattern = pattern;
+		_labelId = labelId;
+	}
+
+	/**
+	 * @return Das Bitmuster.
+	 */
+	public Pattern get_pattern() {
+		return _pattern;
+	}
+
+	/**
+	 * @return Label-Id der Vorlage, siehe PatternSet.get_labels().
+	 */
+	public int get_labelId() {
+		return _labelId;
+	}
+
+}
@@ -2,14 +2,18 @@ package de.wbongartz.pattern_recognition.patterns;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Kapselt ein Bitmuster.
+ * Die Bits werden zeilenweise in einem long-Array abgelegt (Bit-Index = Zeile * Breite + Spalte).
  * @author Wolfgang Bongartz
  */
 public class Pattern implements Cloneable {
 
-	private boolean[][] _pattern;
+	private static final int BITS_PER_WORD = 64;
+
+	private long[]      _bits;
 	private String      _name;
 	private int 	    _height;
 	private int 	    _width;
@@ -28,9 +32,12 @@ public class Pattern implements Cloneable {
 		_name=name;
 		_height  = newPattern.length;
 		_width   = newPattern[0].length;
-		_pattern = new boolean[_height][_width];
+		_bits    = new long[numberOfWords(_height*_width)];
 		for(int i=0; i<_height; i++) {
-			_pattern[i] = Arrays.copyOf(newPattern[i], _width);
+			int rowLength = Math.min(newPattern[i].length, _width);
+			for(int j=0; j<rowLength; j++) {
+				if(newPattern[i][j]) setBit(i*_width+j);
+			}
 		}
 	}
 
@@ -56,12 +63,41 @@ public class Pattern implements Cloneable {
 		return pattern;
 	}
 
+	/**
+	 * Erzeugt ein Bitmuster direkt aus bereits gepackten Bits, z.B. beim Laden eines kompilierten Korpus.
+	 * @param name
+	 * @param height
+	 * @param width
+	 * @param bits Zeilenweise gepackte Bits, siehe Klassenbeschreibung. Wird ohne Kopie übernommen.
+	 */
+	Pattern(String name, int height, int width, long[] bits) {
+		if(name==null || name.length()==0) throw new IllegalArgumentException();
+		if(height<1 || width<1 || bits==null || bits.length!=numberOfWords(height*width)) throw new IllegalArgumentException("Bitmuster ist unvollständig!");
+		_name   = name;
+		_height = height;
+		_width  = width;
+		_bits   = bits;
+	}
+
 	/**
 	 * Copy-Konstruktor
 	 * @param other
 	 */
 	public Pattern(Pattern other) {
-		this(other._name, other._pattern);
+		if(other==null) throw new IllegalArgumentException();
+		_name   = other._name;
+		_height = other._height;
+		_width  = other._width;
+		_bits   = Arrays.copyOf(other._bits, other._bits.length);
+	}
+
+	/**
+	 * Liefert die Anzahl der long-Worte, die für die übergebene Anzahl Bits benötigt werden.
+	 * @param numberOfBits
+	 * @return
+	 */
+	public static int numberOfWords(int numberOfBits) {
+		return (numberOfBits + BITS_PER_WORD - 1) / BITS_PER_WORD;
 	}
 
 	/**
@@ -79,7 +115,8 @@ public class Pattern implements Cloneable {
 	 * @return
 	 */
 	public boolean get(int row, int col) {
-		return _pattern[row][col];
+		checkIndex(row, col);
+		return getBit(row*_width+col);
 	}
 
 	/**
@@ -89,7 +126,90 @@ public class Pattern implements Cloneable {
 	 * @param value
 	 */
 	public void set(int row, int col, boolean value) {
-		_pattern[row][col]=value;
+		checkIndex(row, col);
+		if(value)
+			setBit(row*_width+col);
+		else
+			clearBit(row*_width+col);
+	}
+
+	/**
+	 * Liefert den Wert eines Bits über seinen Index (Zeile * Breite + Spalte).
+	 * @param index
+	 * @return
+	 */
+	public boolean get(int index) {
+		if(index<0 || index>=get_numberOfBits()) throw new IllegalArgumentException();
+		return getBit(index);
+	}
+
+	/**
+	 * @return Anzahl der Bits des Bitmusters (Höhe * Breite).
+	 */
+	public int get_numberOfBits() {
+		return _height*_width;
+	}
+
+	/**
+	 * @return Anzahl der long-Worte, in denen die Bits abgelegt sind.
+	 */
+	public int get_numberOfWords() {
+		return _bits.length;
+	}
+
+	/**
+	 * Liefert ein long-Wort der gepackten Darstellung. Bit k des Wortes i entspricht dem Bit-Index i*64+k.
+	 * Bits jenseits von get_numberOfBits() sind immer 0.
+	 * @param index Index des Wortes.
+	 * @return
+	 */
+	public long get_word(int index) {
+		return _bits[index];
+	}
+
+	/**
+	 * Schreibt die Indizes aller gesetzten Bits in aufsteigender Reihenfolge in das übergebene Array.
+	 * @param target Muss wenigstens get_numberOfBits() Einträge aufnehmen können.
+	 * @return Anzahl der gesetzten Bits.
+	 */
+	public int get_setBits(int[] target) {
+		return get_setBits(target, 0);
+	}
+
+	/**
+	 * Wie get_setBits(int[]), schreibt aber ab target[offset].
+	 * @param target Muss ab offset wenigstens get_numberOfBits() Einträge aufnehmen können.
+	 * @param offset
+	 * @return Anzahl der gesetzten Bits.
+	 */
+	public int get_setBits(int[] target, int offset) {
+		if(target==null || offset<0 || target.length-offset<get_numberOfBits()) throw new IllegalArgumentException();
+		int count=offset;
+		for(int i=0; i<_bits.length; i++) {
+			long word = _bits[i];
+			while(word!=0L) {
+				target[count++] = i*BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+				word &= word - 1L; // Niedrigstes gesetztes Bit löschen.
+			}
+		}
+		return count-offset;
+	}
+
+	private void checkIndex(int row, int col) {
+		if(row<0 || row>=_height) throw new IllegalArgumentException("Zeile außerhalb des Bitmusters: " + row);
+		if(col<0 || col>=_width)  throw new IllegalArgumentException("Spalte außerhalb des Bitmusters: " + col);
+	}
+
+	private boolean getBit(int index) {
+		return (_bits[index/BITS_PER_WORD] & (1L << index)) != 0L;
+	}
+
+	private void setBit(int index) {
+		_bits[index/BITS_PER_WORD] |= (1L << index);
+	}
+
+	private void clearBit(int index) {
+		_bits[index/BITS_PER_WORD] &= ~(1L << index);
 	}
 
 	/**
@@ -97,7 +217,7 @@ public class Pattern implements Cloneable {
 	 * @param randomNumberSource
 	 * @return
 	 */
-	public Pattern swapRandomly(Random randomNumberSource) {
+	public Pattern swapRandomly(RandomGenerator randomNumberSource) {
 		if(randomNumberSource==null) randomNumberSource = new Random();
 
 		Pattern retVal = (Pattern) this.clone();
@@ -124,7 +244,7 @@ public class Pattern implements Cloneable {
 	 * @param randomNumberSource
 	 * @return
 	 */
-	public Pattern changeRandomly(Random randomNumberSource) {
+	public Pattern changeRandomly(RandomGenerator randomNumberSource) {
 		if(randomNumberSource==null) randomNumberSource = new Random();
 
 		Pattern retVal = (Pattern) this.clone();
@@ -198,13 +318,8 @@ public class Pattern implements Cloneable {
 		if(this.get_width()!=other.get_width())  throw new IllegalArgumentException();
 
 		int retVal=0;
-		boolean l, r;
-		for(int row=0; row<_height; row++) {
-			for(int col=0; col<_width; col++) {
-				l = this.get(row,col);
-				r = other.get(row,col);
-				if(l!=r) retVal++;
-			}
+		for(int i=0; i<_bits.length; i++) {
+			retVal += Long.bitCount(this._bits[i] ^ other._bits[i]);
 		}
 
 		return retVal;
@@ -221,7 +336,7 @@ public class Pattern implements Cloneable {
 		if(this.get_width()!=other.get_width())   return false;
 		if(this._name.compareTo(other._name)!=0)  return false;
 
-		return ( differences(other)==0 );
+		return Arrays.equals(this._bits, other._bits);
 	}
 
 	@Override
@@ -241,7 +356,21 @@ public class Pattern implements Cloneable {
 
 	@Override
 	public int hashCode() {
-		return this.toString().hashCode();
+		return 31 * _name.hashCode() + Arrays.hashCode(_bits);
+	}
+
+	/**
+	 * Hash-Wert, der nur aus Höhe, Breite und den gepackten Bits gebildet wird. Anders als hashCode() 
+	 * haben gleiche Bitmuster mit unterschiedlichem Namen denselben Wert (z.B. als Schlüssel eines Ergebnis-Caches).
+	 * Jedes Wort wird mit einer Multiplikation eingemischt; es wird kein Speicher angefordert.
+	 * @return
+	 */
+	public int bitsHashCode() {
+		long h = _height * 31L + _width;
+		for(int i=0; i<_bits.length; i++) {
+			h = (h ^ _bits[i]) * 0x9E3779B97F4A7C15L;
+		}
+		return (int) (h ^ (h >>> 32));
 	}
 
 }
@@ -0,0 +1,143 @@
+package de.wbongartz.pattern_recognition.patterns;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Kompiliertes, binäres Korpus von Bitmustern.
+ * Die Bitmuster werden bereits gepackt abgelegt und beim Laden ohne Umwandlung aus der in den Speicher 
+ * eingeblendeten Datei übernommen. Das lohnt sich für große Korpora, deren Textform (siehe NN4PatternRecognition) 
+ * langsam zu parsen ist.
+ * 
+ * Aufbau der Datei (alle Zahlen in Big-Endian):
+ * Kennung, Version, Höhe, Breite, Anzahl Worte je Bitmuster, 
+ * Anzahl und Texte der Namen (Länge in Byte gefolgt von UTF-8), Anzahl der Bitmuster, 
+ * je Bitmuster der Index seines Namens (int), danach die Bits aller Bitmuster als zusammenhängender Block (long).
+ * @author Wolfgang Bongartz
+ */
+public final class PatternCorpus {
+
+	private static final int CORPUS_MAGIC   = 0x4E4E3443; // "NN4C"
+	private static final int CORPUS_VERSION = 1;
+
+	private PatternCorpus() {
+	}
+
+	/**
+	 * Schreibt alle Bitmuster eines PatternSets in eine Korpus-Datei.
+	 * @param patterns Alle Bitmuster müssen die gleiche Höhe und Breite haben.
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void compile(PatternSet patterns, File file) throws IOException {
+		if(patterns==null || patterns.size()==0 || file==null) throw new IllegalArgumentException();
+		Pattern first  = patterns.get_pattern(0);
+		int     height = first.get_height();
+		int     width  = first.get_width();
+		int     words  = first.get_numberOfWords();
+
+		// Namens-Tabelle aufbauen. Die Reihenfolge entspricht dem ersten Auftreten.
+		LinkedHashMap<String, Integer> labels = new LinkedHashMap<String, Integer>();
+		int[] labelIndex = new int[patterns.size()];
+		int i=0;
+		for(Pattern pattern: patterns) {
+			if(pattern.get_height()!=height || pattern.get_width()!=width) throw new IllegalArgumentException("Alle Bitmuster müssen die gleiche Größe haben!");
+			Integer index = labels.get(pattern.get_name());
+			if(index==null) {
+				index = labels.size();
+				labels.put(pattern.get_name(), index);
+			}
+			labelIndex[i++] = index;
+		}
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(CORPUS_MAGIC);
+			out.writeInt(CORPUS_VERSION);
+			out.writeInt(height);
+			out.writeInt(width);
+			out.writeInt(words);
+			out.writeInt(labels.size());
+			for(String label: labels.keySet()) {
+				byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(labelIndex.length);
+			for(int index: labelIndex) out.writeInt(index);
+			for(Pattern pattern: patterns) {
+				for(int w=0; w<words; w++) out.writeLong(pattern.get_word(w));
+			}
+		} finally {
+			if(out!=null) out.close();
+		}
+	}
+
+	/**
+	 * Lädt eine mit compile() geschriebene Korpus-Datei. Die Datei wird in den Speicher eingeblendet.
+	 * Bitmuster mit gleichem Namen teilen sich dasselbe String-Objekt.
+	 * @param file
+	 * @param randomNumberSource Siehe PatternSet.
+	 * @return
+	 * @throws IOException Falls die Datei nicht gelesen werden kann oder keine gültige Korpus-Datei ist.
+	 */
+	public static PatternSet load(File file, Random randomNumberSource) throws IOException {
+		if(file==null) throw new IllegalArgumentException();
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt()!=CORPUS_MAGIC) throw new IOException("Keine Korpus-Datei: " + file);
+			if(buffer.getInt()!=CORPUS_VERSION) throw new IOException("Unbekannte Version der Korpus-Datei: " + file);
+			int height = buffer.getInt();
+			int width  = buffer.getInt();
+			int words  = buffer.getInt();
+			// Produkt in long, damit große Dimensionen nicht überlaufen.
+			long numberOfBits = (long) height * width;
+			if(height<1 || width<1 || numberOfBits>Integer.MAX_VALUE || words!=Pattern.numberOfWords((int) numberOfBits)) throw new IOException("Ungültige Dimensionen in der Korpus-Datei: " + file);
+
+			int numberOfLabels = buffer.getInt();
+			// Jeder Name belegt wenigstens seine Längenangabe.
+			if(numberOfLabels<0 || numberOfLabels>buffer.remaining()/Integer.BYTES) throw new IOException("Ungültige Anzahl Namen in der Korpus-Datei: " + file);
+			String[] labels = new String[numberOfLabels];
+			for(int i=0; i<labels.length; i++) {
+				int length = buffer.getInt();
+				if(length<1 || length>buffer.remaining()) throw new IOException("Ungültige Namenslänge in der Korpus-Datei: " + file);
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				labels[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			int numberOfPatterns = buffer.getInt();
+			// Jedes Bitmuster belegt seinen Namensindex und seine Bits.
+			if(numberOfPatterns<0 || (long) numberOfPatterns * (Integer.BYTES + (long) words * Long.BYTES) > buffer.remaining()) throw new IOException("Ungültige Anzahl Bitmuster in der Korpus-Datei: " + file);
+			int[] labelIndex = new int[numberOfPatterns];
+			buffer.asIntBuffer().get(labelIndex);
+			buffer.position(buffer.position() + numberOfPatterns * Integer.BYTES);
+
+			// Bits jenseits von height*width im letzten Wort müssen 0 sein, sonst stimmen equals() und die Bitzählung nicht.
+			int  usedBits  = (int) numberOfBits - (words-1)*Long.SIZE;
+			long extraBits = (usedBits==Long.SIZE) ? 0L : -1L << usedBits;
+			LongBuffer bits = buffer.asLongBuffer();
+			ArrayList<Pattern> patterns = new ArrayList<Pattern>(numberOfPatterns);
+			for(int i=0; i<numberOfPatterns; i++) {
+				if(labelIndex[i]<0 || labelIndex[i]>=labels.length) throw new IOException("Ungültiger Namensindex in der Korpus-Datei: " + file);
+				long[] patternBits = new long[words];
+				bits.get(patternBits);
+				if((patternBits[words-1] & extraBits)!=0L) throw new IOException("Ungültige Bits außerhalb des Bitmusters in der Korpus-Datei: " + file);
+				patterns.add(new Pattern(labels[labelIndex[i]], height, width, patternBits));
+			}
+			return new PatternSet(patterns, randomNumberSource, labels);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Korpus-Datei ist unvollständig: " + file);
+		} finally {
+			if(channel!=null) channel.close();
+		}
+	}
+
+}
@@ -1,6 +1,8 @@
 package de.wbongartz.pattern_recognition.patterns;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
+import java.util.stream.*;
 
 /**
  * Verwalter für Bitmuster-Objekte.
@@ -11,18 +13,93 @@ public class PatternSet implements Iterable<Pattern> {
 
 	private ArrayList<Pattern> _patterns;
 	private Random _randomNumberSource;
+	private ArrayList<String> _labels;				// Wörterbuch: Label-Id -> Name.
+	private HashMap<String, Integer> _labelIds;		// Wörterbuch: Name -> Label-Id.
+	private int[] _labelIdOfPattern;				// Label-Id jedes Bitmusters, parallel zu _patterns.
 
 	/**
-	 * 
+	 * Die Namen der Bitmuster erhalten in der Reihenfolge ihres ersten Auftretens die Label-Ids 0, 1, 2, ...
 	 * @param patterns
 	 * @param randomNumberSource Wird von einigen Methoden benötigt. 
 	 * Falls NULL wird ein eigenes Random-Objekt erzeugt.
 	 */
 	public PatternSet(ArrayList<Pattern> patterns, Random randomNumberSource) {
+		this(patterns, randomNumberSource, null);
+	}
+
+	/**
+	 * Wie PatternSet(ArrayList, Random), die Label-Ids werden aber zuerst aus einem vorgegebenen Wörterbuch vergeben. 
+	 * So erhalten Bitmuster gleichen Namens in verschiedenen PatternSets dieselbe Label-Id.
+	 * @param patterns
+	 * @param randomNumberSource
+	 * @param labels Vorgegebenes Wörterbuch, z.B. get_labels() eines anderen PatternSets. Unbekannte Namen werden angehängt. Darf NULL sein.
+	 */
+	public PatternSet(ArrayList<Pattern> patterns, Random randomNumberSource, String[] labels) {
 		_randomNumberSource = randomNumberSource;
 		if(_randomNumberSource==null) _randomNumberSource = new Random();
 		if(patterns==null) throw new IllegalArgumentException();
 		_patterns = patterns;
+		_labels   = new ArrayList<String>();
+		_labelIds = new HashMap<String, Integer>();
+		if(labels!=null) {
+			for(String label: labels) addLabel(label);
+		}
+		assignLabelIds();
+	}
+
+	/**
+	 * Nimmt einen Namen ins Wörterbuch auf, falls er noch nicht enthalten ist.
+	 * @param label
+	 * @return Label-Id des Namens.
+	 */
+	private int addLabel(String label) {
+		Integer labelId = _labelIds.get(label);
+		if(labelId==null) {
+			labelId = _labels.size();
+			_labels.add(label);
+			_labelIds.put(label, labelId);
+		}
+		return labelId;
+	}
+
+	/**
+	 * Vergibt die Label-Ids aller Bitmuster gemäß dem Wörterbuch dieses PatternSets.
+	 * Die Label-Ids gehören dem PatternSet, nicht dem Bitmuster: Gehört ein Bitmuster zu mehreren PatternSets 
+	 * mit unterschiedlichen Wörterbüchern, hat es in jedem seine eigene Label-Id.
+	 */
+	private void assignLabelIds() {
+		_labelIdOfPattern = new int[_patterns.size()];
+		for(int i=0; i<_labelIdOfPattern.length; i++) {
+			_labelIdOfPattern[i] = addLabel(_patterns.get(i).get_name());
+		}
+	}
+
+	/**
+	 * Liefert das Wörterbuch: Der Name mit der Label-Id i steht an Position i.
+	 * @return
+	 */
+	public String[] get_labels() {
+		return _labels.toArray(new String[_labels.size()]);
+	}
+
+	/**
+	 * Liefert die Label-Id eines Bitmusters.
+	 * @param index Index des Bitmusters (siehe get_pattern()).
+	 * @return Index des Namens im Wörterbuch (siehe get_labels()).
+	 */
+	public int get_labelId(int index) {
+		if(index<0 || index>=_labelIdOfPattern.length) throw new IllegalArgumentException();
+		return _labelIdOfPattern[index];
+	}
+
+	/**
+	 * Liefert die Label-Id eines Namens.
+	 * @param label
+	 * @return -1, falls der Name nicht im Wörterbuch steht.
+	 */
+	public int get_labelId(String label) {
+		Integer labelId = _labelIds.get(label);
+		return labelId==null ? -1 : labelId;
 	}
 
 	/* (non-Javadoc)
@@ -56,14 +133,62 @@ public class PatternSet implements Iterable<Pattern> {
 	 * @return
 	 */
 	public Pattern chooseRandomly() {
-		int key_index = _randomNumberSource.nextInt(_patterns.size());
-		Pattern retVal = _patterns.get(key_index);
-		return retVal;
+		return chooseRandomly(_randomNumberSource);
+	}
+
+	private Pattern chooseRandomly(RandomGenerator randomNumberSource) {
+		return _patterns.get(chooseRandomIndex(randomNumberSource));
+	}
+
+	/**
+	 * @param randomNumberSource
+	 * @return Index eines zufällig ausgewählten Bitmusters.
+	 */
+	int chooseRandomIndex(RandomGenerator randomNumberSource) {
+		return randomNumberSource.nextInt(_patterns.size());
+	}
+
+	/**
+	 * Erzeugt ein zufällig ausgewähltes und nach dem Zufallsprinzip verändertes Bitmuster.
+	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die höchstens angewendet werden soll.
+	 * @param randomNumberSource
+	 * @return
+	 */
+	Pattern createRandomizedPattern(int numberOfChanges, RandomGenerator randomNumberSource) {
+		// Wähle das Bitmuster aus, das als Vorlage verwendet werden soll.
+		return createRandomizedPattern(chooseRandomIndex(randomNumberSource), numberOfChanges, randomNumberSource);
+	}
+
+	/**
+	 * Wie createRandomizedPattern(int, RandomGenerator) mit einer vorgegebenen Vorlage.
+	 * @param templateIndex Index der Vorlage.
+	 * @param numberOfChanges
+	 * @param randomNumberSource
+	 * @return
+	 */
+	Pattern createRandomizedPattern(int templateIndex, int numberOfChanges, RandomGenerator randomNumberSource) {
+
+		Pattern original = _patterns.get(templateIndex);
+		Pattern changed = (Pattern) original.clone();
+
+		if(numberOfChanges>0) {
+			// Bestimme die Anzahl der auf die Vorlage anzuwendenden Veränderungen.
+			int changes = randomNumberSource.nextInt(numberOfChanges+1);
+
+			// Führe die Veränderungen durch.
+			for(int j=0; j<changes; j++) {
+				changed = changed.changeRandomly(randomNumberSource);
+			}
+		}
+
+		return changed;
 	}
 
 	/**
 	 * Erzeugt ein neues PatternSet-Objekt, dessen Inhalt aus zufällig ausgewählten und nach dem 
 	 * Zufallsprinzip veränderten Bitmustern besteht.
+	 * Die Zufallszahlen-Quellen der einzelnen Bitmuster werden aus einem Startwert abgeleitet, den die 
+	 * Zufallszahlen-Quelle dieses PatternSets liefert (siehe SeedSequence).
 	 * @param numberOfPatterns Anzahl der zu erzeugenden Bitmuster.
 	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die auf jedes Bitmuster höchstens angewendet werden soll. 
 	 * @param include_templates 
@@ -74,24 +199,10 @@ public class PatternSet implements Iterable<Pattern> {
 	public PatternSet createRandomized(int numberOfPatterns, int numberOfChanges, boolean include_templates) {
 
 		ArrayList<Pattern> retVal = new ArrayList<Pattern>();
+		SeedSequence seeds = new SeedSequence(_randomNumberSource.nextLong());
 
 		for(int i=0; i<numberOfPatterns; i++) {
-
-			// Wähle das Bitmuster aus, das als Vorlage verwendet werden soll.
-			Pattern original = chooseRandomly();
-			Pattern changed = (Pattern) original.clone();
-
-			if(numberOfChanges>0) {
-				// Bestimme die Anzahl der auf die Vorlage anzuwendenden Veränderungen.
-				int changes = _randomNumberSource.nextInt(numberOfChanges+1);
-
-				// Führe die Veränderungen durch.
-				for(int j=0; j<changes; j++) {
-					changed = changed.changeRandomly(_randomNumberSource);
-				}
-			}
-
-			retVal.add(changed);
+			retVal.add(createRandomizedPattern(numberOfChanges, seeds.forIndex(i)));
 		}
 
 		assert(retVal.size()==numberOfPatterns);
@@ -102,20 +213,68 @@ public class PatternSet implements Iterable<Pattern> {
 			}
 		}
 
-		return new PatternSet(retVal, this._randomNumberSource);
+		return new PatternSet(retVal, this._randomNumberSource, get_labels());
 	}
 
 	/**
-	 * Liefert eine Liste aller vorkommenden Bitmuster-Namen.
+	 * Wie createRandomized(), die Bitmuster werden aber erst beim Durchlaufen des Streams erzeugt und nicht gespeichert.
+	 * Der Speicherbedarf ist daher unabhängig von der Anzahl der Bitmuster.
+	 * Der Stream liefert dieselben Bitmuster in derselben Reihenfolge wie createRandomized().
+	 * Er kann auch parallel verarbeitet werden, ohne dass sich die erzeugten Bitmuster ändern.
+	 * @param numberOfPatterns Anzahl der zu erzeugenden Bitmuster.
+	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die auf jedes Bitmuster höchstens angewendet werden soll. 
+	 * @param include_templates TRUE: Der Stream liefert im Anschluss auch die unveränderten Original-Bitmuster.
 	 * @return
 	 */
-	public String[] getListOfName() {
-		HashSet<String> names = new HashSet<String>();
-		for(Pattern p: this) {
-			names.add(p.get_name());
+	public Stream<Pattern> streamRandomized(int numberOfPatterns, int numberOfChanges, boolean include_templates) {
+		return streamRandomized(numberOfPatterns, numberOfChanges, include_templates, new SeedSequence(_randomNumberSource.nextLong()));
+	}
+
+	/**
+	 * Wie streamRandomized(int, int, boolean), die Zufallszahlen-Quelle des i-ten Bitmusters ist aber seeds.forIndex(i).
+	 * Bei gleichem Startwert entstehen so immer dieselben Bitmuster, egal ob der Stream sequentiell oder parallel verarbeitet wird.
+	 * @param numberOfPatterns Anzahl der zu erzeugenden Bitmuster.
+	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die auf jedes Bitmuster höchstens angewendet werden soll. 
+	 * @param include_templates TRUE: Der Stream liefert im Anschluss auch die unveränderten Original-Bitmuster.
+	 * @param seeds
+	 * @return
+	 */
+	public Stream<Pattern> streamRandomized(int numberOfPatterns, int numberOfChanges, boolean include_templates, SeedSequence seeds) {
+		if(numberOfPatterns<0) throw new IllegalArgumentException();
+		if(seeds==null) throw new IllegalArgumentException();
+		Stream<Pattern> retVal = StreamSupport.stream(new RandomizedPatternSpliterator<Pattern>(this, 0, numberOfPatterns, numberOfChanges, seeds, (pattern, labelId) -> pattern), false);
+		if(include_templates) {
+			retVal = Stream.concat(retVal, _patterns.stream());
 		}
-		String[] retVal = new String[names.size()];
-		return names.toArray(retVal);
+		return retVal;
+	}
+
+	/**
+	 * Wie streamRandomized(int, int, boolean, SeedSequence), liefert aber zu jedem Bitmuster die Label-Id seiner Vorlage 
+	 * in diesem PatternSet mit. Die Auswertung kann so Label-Ids vergleichen, ohne Namen nachzuschlagen.
+	 * @param numberOfPatterns Anzahl der zu erzeugenden Bitmuster.
+	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die auf jedes Bitmuster höchstens angewendet werden soll. 
+	 * @param include_templates TRUE: Der Stream liefert im Anschluss auch die unveränderten Original-Bitmuster.
+	 * @param seeds
+	 * @return Dieselben Bitmuster in derselben Reihenfolge wie streamRandomized(int, int, boolean, SeedSequence).
+	 */
+	public Stream<LabeledPattern> streamRandomizedWithLabels(int numberOfPatterns, int numberOfChanges, boolean include_templates, SeedSequence seeds) {
+		if(numberOfPatterns<0) throw new IllegalArgumentException();
+		if(seeds==null) throw new IllegalArgumentException();
+		Stream<LabeledPattern> retVal = StreamSupport.stream(new RandomizedPatternSpliterator<LabeledPattern>(this, 0, numberOfPatterns, numberOfChanges, seeds, LabeledPattern::new), false);
+		if(include_templates) {
+			retVal = Stream.concat(retVal, IntStream.range(0, _patterns.size()).mapToObj(i -> new LabeledPattern(_patterns.get(i), _labelIdOfPattern[i])));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Liefert eine Liste aller vorkommenden Bitmuster-Namen in der Reihenfolge ihrer Label-Ids.
+	 * Wurde ein Wörterbuch vorgegeben, sind auch dessen Namen enthalten. Entspricht get_labels().
+	 * @return
+	 */
+	public String[] getListOfName() {
+		return get_labels();
 	}
 	
 	/**
@@ -1,24 +1,39 @@
 package de.wbongartz.pattern_recognition.patterns;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 /**
  * Durchläuft alle Patterns in einem PatternSet in zufälliger Reihenfolge.
+ * Die Reihenfolge entsteht schrittweise durch Fisher-Yates-Mischen einer Index-Permutation: Jeder Aufruf von next() 
+ * tauscht einen zufällig gewählten, noch nicht gelieferten Index an die aktuelle Position. Ein Durchlauf kostet daher O(n).
+ * Mit reset() kann derselbe Iterator für die nächste Epoche erneut (und neu gemischt) durchlaufen werden, ohne Speicher anzufordern.
  * @author Wolfgang Bongartz
  */
 public class RandomPatternIterator implements Iterator<Pattern> {
 	
-	private ArrayList<Pattern> _patterns;
-	private Random             _randomNumberSource;
+	private PatternSet      _patterns;
+	private RandomGenerator _randomNumberSource;
+	private int[]           _permutation;	// Die ersten _position Einträge sind bereits geliefert.
+	private int             _position;
 	
-	public RandomPatternIterator(PatternSet patterns, Random randomNumberSource) {
+	public RandomPatternIterator(PatternSet patterns, RandomGenerator randomNumberSource) {
 		if(patterns==null) throw new IllegalArgumentException();
 		if(randomNumberSource==null) throw new IllegalArgumentException();
 		_randomNumberSource = randomNumberSource;
-		_patterns = new ArrayList<Pattern>();
-		for(Pattern p: patterns) {
-			_patterns.add(p);
+		_patterns    = patterns;
+		_permutation = new int[patterns.size()];
+		for(int i=0; i<_permutation.length; i++) {
+			_permutation[i] = i;
 		}
+		_position = 0;
+	}
+
+	/**
+	 * Beginnt einen neuen Durchlauf in neuer zufälliger Reihenfolge.
+	 */
+	public void reset() {
+		_position = 0;
 	}
 
 	/* (non-Javadoc)
@@ -26,7 +41,7 @@ public class RandomPatternIterator implements Iterator<Pattern> {
 	 */
 	@Override
 	public boolean hasNext() {
-		return (_patterns.size() > 0);
+		return (_position < _permutation.length);
 	}
 
 	/* (non-Javadoc)
@@ -34,13 +49,23 @@ public class RandomPatternIterator implements Iterator<Pattern> {
 	 */
 	@Override
 	public Pattern next() {
+		if(hasNext()) return _patterns.get_pattern(nextIndex());
+		return null;
+	}
+
+	/**
+	 * Wie next(), liefert aber den Index des nächsten Bitmusters im PatternSet, z.B. für PatternSet.get_labelId(int).
+	 * @return -1, falls der Durchlauf beendet ist.
+	 */
+	public int nextIndex() {
 		if(hasNext()) {
-			int index = _randomNumberSource.nextInt(_patterns.size());
-			Pattern theNextOne = _patterns.get(index);
-			_patterns.remove(index);
+			int index = _position + _randomNumberSource.nextInt(_permutation.length - _position);
+			int theNextOne = _permutation[index];
+			_permutation[index] = _permutation[_position];
+			_permutation[_position++] = theNextOne;
 			return theNextOne;
 		}
-		return null;
+		return -1;
 	}
 
 }
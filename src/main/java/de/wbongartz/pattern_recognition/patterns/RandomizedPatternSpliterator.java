@@ -0,0 +1,111 @@
+package de.wbongartz.pattern_recognition.patterns;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Erzeugt nach dem Zufallsprinzip veränderte Bitmuster erst in dem Moment, in dem sie abgerufen werden.
+ * Wird von PatternSet.streamRandomized() und PatternSet.streamRandomizedWithLabels() benutzt.
+ * Jedes Bitmuster wird mit einer eigenen, aus seiner Nummer abgeleiteten Zufallszahlen-Quelle erzeugt. 
+ * Das Ergebnis hängt daher nicht davon ab, wie der Bereich beim Teilen auf Threads verteilt wird.
+ * @param <T> Element des Streams, das factory aus Bitmuster und Label-Id seiner Vorlage bildet.
+ * @author Wolfgang Bongartz
+ */
+class RandomizedPatternSpliterator<T> implements Spliterator<T> {
+
+	private static final int MIN_SPLIT_SIZE = 1024; // Kleinere Bereiche werden nicht weiter geteilt.
+
+	private final PatternSet _templates;
+	private final int        _numberOfChanges;
+	private int              _from;
+	private final int        _to;
+	private final SeedSequence _seeds;
+	private final ObjIntFunction<T> _factory;
+
+	/**
+	 * Bildet ein Element des Streams aus einem Bitmuster und der Label-Id seiner Vorlage.
+	 */
+	@FunctionalInterface
+	interface ObjIntFunction<T> {
+		T apply(Pattern pattern, int labelId);
+	}
+
+	/**
+	 * @param templates Vorlagen, aus denen die Bitmuster erzeugt werden.
+	 * @param from Nummer des ersten zu erzeugenden Bitmusters (einschließlich).
+	 * @param to Nummer des letzten zu erzeugenden Bitmusters (ausschließlich).
+	 * @param numberOfChanges Die Anzahl zufälliger Veränderungen, die auf jedes Bitmuster höchstens angewendet werden soll.
+	 * @param seeds Liefert die Zufallszahlen-Quelle für jedes Bitmuster.
+	 * @param factory Bildet die Elemente des Streams.
+	 */
+	RandomizedPatternSpliterator(PatternSet templates, int from, int to, int numberOfChanges, SeedSequence seeds, ObjIntFunction<T> factory) {
+		if(templates==null || seeds==null || factory==null) throw new IllegalArgumentException();
+		_templates          = templates;
+		_from               = from;
+		_to                 = to;
+		_numberOfChanges    = numberOfChanges;
+		_seeds              = seeds;
+		_factory            = factory;
+	}
+
+	/**
+	 * Erzeugt das Bitmuster mit der Nummer index.
+	 * @param index
+	 * @return
+	 */
+	private T create(int index) {
+		SplittableRandom randomNumberSource = _seeds.forIndex(index);
+		int template = _templates.chooseRandomIndex(randomNumberSource);
+		return _factory.apply(_templates.createRandomizedPattern(template, _numberOfChanges, randomNumberSource), _templates.get_labelId(template));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+	 */
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if(_from>=_to) return false;
+		action.accept(create(_from++));
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#forEachRemaining(java.util.function.Consumer)
+	 */
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		while(_from<_to) {
+			action.accept(create(_from++));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#trySplit()
+	 */
+	@Override
+	public Spliterator<T> trySplit() {
+		int size = _to - _from;
+		if(size < 2*MIN_SPLIT_SIZE) return null;
+		int middle = _from + size/2;
+		Spliterator<T> retVal = new RandomizedPatternSpliterator<T>(_templates, _from, middle, _numberOfChanges, _seeds, _factory);
+		_from = middle;
+		return retVal;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#estimateSize()
+	 */
+	@Override
+	public long estimateSize() {
+		return _to - _from;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Spliterator#characteristics()
+	 */
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+	}
+
+}
@@ -0,0 +1,54 @@
+package de.wbongartz.pattern_recognition.patterns;
+
+import java.util.*;
+
+/**
+ * Leitet aus einem einzigen Startwert beliebig viele voneinander unabhängige Zufallszahlen-Quellen ab.
+ * Die Quelle für einen Index hängt nur vom Startwert und vom Index ab, nicht davon, in welcher Reihenfolge 
+ * oder in welchem Thread sie angefordert wird. Damit liefern parallele Abläufe bei gleichem Startwert 
+ * unabhängig von der Anzahl der Threads dieselben Ergebnisse.
+ * @author Wolfgang Bongartz
+ */
+public final class SeedSequence {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long _seed;
+
+	/**
+	 * @param seed Startwert.
+	 */
+	public SeedSequence(long seed) {
+		_seed = seed;
+	}
+
+	/**
+	 * @return Startwert.
+	 */
+	public long get_seed() {
+		return _seed;
+	}
+
+	/**
+	 * Liefert die Zufallszahlen-Quelle zu einem Index (z.B. der Nummer eines Bitmusters).
+	 * Jeder Aufruf liefert ein neues Objekt, das mit derselben Folge beginnt.
+	 * @param index
+	 * @return
+	 */
+	public SplittableRandom forIndex(long index) {
+		return new SplittableRandom(mix64(_seed + GOLDEN_GAMMA * (index + 1)));
+	}
+
+	/**
+	 * Bijektive Durchmischung eines 64-Bit-Wertes (Finalizer aus SplitMix64). 
+	 * Benachbarte Indizes ergeben so weit auseinander liegende Startwerte.
+	 * @param z
+	 * @return
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
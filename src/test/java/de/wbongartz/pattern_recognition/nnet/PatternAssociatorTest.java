@@ -1,6 +1,10 @@
 package de.wbongartz.pattern_recognition.nnet;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.commons.math3.linear.*;
 
 import de.wbongartz.pattern_recognition.patterns.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -152,4 +156,782 @@ public class PatternAssociatorTest {
 		}
 	}
 
+	@Test
+	public void testMatchEqualsVisitorPath() {
+		ActivationFunction[] functions = { 
+				new ActivationFunction_Linear(), 
+				new ActivationFunction_Logistic(), 
+				new ActivationFunction_TangensHyperbolicus(),
+				new ActivationFunction_Binary()
+		};
+		try {
+			for(ActivationFunction function: functions) {
+				PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, function);
+				pa.train(this.fullPatternSet, false, 5, new Random(4711));
+
+				for(Pattern p: this.fullPatternSet) {
+					Pattern sample = p.changeRandomly(new Random(p.hashCode()));
+					if(pa.match(sample).compareTo(matchWithVisitor(pa, function, sample))!=0) fail();
+				}
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testOnlineTrainingEqualsVisitorPath() {
+		ActivationFunction[] functions = { 
+				new ActivationFunction_Linear(), 
+				new ActivationFunction_Logistic(), 
+				new ActivationFunction_TangensHyperbolicus()
+		};
+		try {
+			PatternSet templates = new PatternSet(new ArrayList<Pattern>(Arrays.asList(this.pattern_a, this.pattern_b, this.pattern_c)), new Random(4711));
+			PatternSet samples = templates.createRandomized(50, 5, true);
+			for(ActivationFunction function: functions) {
+				PatternAssociator pa = new PatternAssociator(42, 3, 0.05d, function);
+				pa.train(samples, false, 3, new Random(4711));
+
+				// Referenz: Online-Learning mit den Visitors auf commons-math-Matrizen, in derselben Reihenfolge.
+				// Wie im ursprünglichen Verfahren wird der Delta-Puffer nur zu Beginn jeder Epoche zurückgesetzt.
+				Array2DRowRealMatrix weigths = new Array2DRowRealMatrix(42, 3);
+				RandomPatternIterator order = new RandomPatternIterator(samples, new Random(4711));
+				for(int epoch=0; epoch<3; epoch++) {
+					order.reset();
+					Array2DRowRealMatrix delta = new Array2DRowRealMatrix(42, 3);
+					while(order.hasNext()) {
+						int index = order.nextIndex();
+						Pattern sample = samples.get_pattern(index);
+						ArrayRealVector input = new ArrayRealVector(sample.get_numberOfBits());
+						for(int i=0; i<sample.get_numberOfBits(); i++) input.setEntry(i, sample.get(i) ? 1.0d : 0.0d);
+						ArrayRealVector target = new ArrayRealVector(3);
+						target.setEntry(samples.get_labelId(index), 1.0d);
+
+						function.setInputVector(input);
+						function.setWeigths(weigths);
+						ArrayRealVector output = new ArrayRealVector(3);
+						output.walkInDefaultOrder(function);
+						output.walkInDefaultOrder(new DeltaRule(input, target, delta, 0.05d));
+						weigths = weigths.add(delta);
+					}
+				}
+				if(!pa.getWeigthMatrix().equals(weigths)) fail();
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testMatchAll() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Logistic());
+			pa.train(this.fullPatternSet, true, 10, null);
+
+			// Mehr Bitmuster als in einen Block passen, damit auch ein unvollständiger letzter Block vorkommt.
+			PatternSet samples = this.fullPatternSet.createRandomized(150, 5, true);
+			int[] answers = pa.matchAll(samples);
+			if(answers.length!=samples.size()) fail();
+
+			int i=0;
+			for(Pattern sample: samples) {
+				if(pa.get_semantic(answers[i]).compareTo(pa.match(sample))!=0) fail();
+				if(answers[i]!=pa.matchIndex(sample)) fail();
+				i++;
+			}
+
+			// Nach dem Training entspricht der Index der Label-Id der Trainingsdaten, auch wenn dieselben Bitmuster 
+			// danach in ein PatternSet mit anderem Wörterbuch aufgenommen werden.
+			ArrayList<Pattern> reversed = new ArrayList<Pattern>();
+			for(Pattern template: this.fullPatternSet) reversed.add(0, template);
+			PatternSet other = new PatternSet(reversed, null);
+			for(int t=0; t<this.fullPatternSet.size(); t++) {
+				if(pa.matchIndex(this.fullPatternSet.get_pattern(t))!=this.fullPatternSet.get_labelId(t)) fail();
+			}
+			if(other.get_labelId(0)==this.fullPatternSet.get_labelId(2)) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Linear());
+			pa.matchAll(this.fullPatternSet);
+			fail();
+		} catch(NeuralNetworkIsUntrainedException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testEarlyStopping() {
+		try {
+			// Ohne Kriterien werden alle Epochen durchlaufen.
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Linear());
+			TrainingResult result = pa.train(this.fullPatternSet, true, 20, null);
+			if(result.get_noOfEpochs()!=20 || result.get_stopReason()!=TrainingResult.StopReason.EPOCHS) fail();
+
+			// Zielwert für den Fehler.
+			StoppingCriteria criteria = new StoppingCriteria();
+			criteria.setTargetError(0.01d);
+			pa = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Linear());
+			result = pa.train(this.fullPatternSet, true, 1000, null, criteria);
+			if(result.get_stopReason()!=TrainingResult.StopReason.TARGET_ERROR) fail();
+			if(result.get_noOfEpochs()>=1000 || result.get_error()>0.01d) fail();
+
+			// Keine Verbesserung mehr.
+			criteria = new StoppingCriteria();
+			criteria.setPatience(3, 1e-3);
+			pa = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Linear());
+			result = pa.train(this.fullPatternSet, true, 1000, null, criteria);
+			if(result.get_stopReason()!=TrainingResult.StopReason.NO_IMPROVEMENT || result.get_noOfEpochs()>=1000) fail();
+
+			// Gewichte ändern sich kaum noch; gilt auch für das zerlegte Batch-Learning.
+			criteria = new StoppingCriteria();
+			criteria.setMaxWeightChange(1e-3);
+			pa = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Linear());
+			pa.setNumberOfShards(2);
+			result = pa.train(this.fullPatternSet, true, 1000, null, criteria);
+			if(result.get_stopReason()!=TrainingResult.StopReason.WEIGHTS_CONVERGED || result.get_noOfEpochs()>=1000) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Kleine Verbesserungen verschieben den Bezugsfehler nicht: 0.85 ist gegenüber 1.0 eine Verbesserung um mehr als 0.1,
+		// danach zählen die Epochen gegen 0.85.
+		try {
+			StoppingCriteria criteria = new StoppingCriteria();
+			criteria.setPatience(3, 0.1d);
+			ConvergenceMonitor monitor = new ConvergenceMonitor(criteria, new ArrayList<TrainingListener>(), WeightMatrix.create(Precision.DOUBLE, 42, 3));
+			double[] errors = { 1.0d, 0.95d, 0.9d, 0.85d, 0.84d, 0.83d, 0.82d };
+			for(int epoch=0; epoch<errors.length; epoch++) {
+				monitor.startEpoch();
+				boolean stop = monitor.endEpoch(errors[epoch], 3);
+				if(stop!=(epoch==errors.length-1)) fail();
+			}
+			if(monitor.getResult().get_stopReason()!=TrainingResult.StopReason.NO_IMPROVEMENT) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+
+		try {
+			new StoppingCriteria().setTargetError(-1d);
+			fail();
+		} catch(IllegalArgumentException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testTrainingListener() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Linear());
+			List<EpochStatistics> statistics = new ArrayList<EpochStatistics>();
+			pa.addTrainingListener(statistics::add);
+			TrainingResult result = pa.train(this.fullPatternSet, true, 5, null);
+
+			if(statistics.size()!=5) fail();
+			for(int i=0; i<statistics.size(); i++) {
+				EpochStatistics epoch = statistics.get(i);
+				if(epoch.get_epoch()!=i+1) fail();
+				if(epoch.get_noOfPatterns()!=3) fail();
+				if(epoch.get_wallTime()<0) fail();
+				if(!(epoch.get_deltaNorm()>0d)) fail();
+				if(i>0 && epoch.get_error()>=statistics.get(i-1).get_error()) fail();
+			}
+			if(statistics.get(4).get_error()!=result.get_error()) fail();
+
+			// Auch das asynchrone Training meldet seine Epochen.
+			statistics.clear();
+			result = pa.trainAsynchronously(this.fullPatternSet, 3, null);
+			if(statistics.size()!=3 || statistics.get(2).get_error()!=result.get_error()) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testMatchMetrics() {
+		try {
+			// Jeder Wert liegt in einem Fach, dessen obere Grenze höchstens 1/8 darüber liegt.
+			for(long value: new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE/3 }) {
+				long upperBound = MatchMetrics.bucketUpperBound(MatchMetrics.bucketIndex(value));
+				if(upperBound<value || upperBound-value > value/8) fail();
+			}
+
+			MatchMetrics metrics = new MatchMetrics();
+			for(long latency=1; latency<=1000; latency++) metrics.recordMatch(latency * 1000);
+			if(metrics.getMatchCount()!=1000) fail();
+			if(Math.abs(metrics.getP50Latency() - 500000) > 500000/8) fail();
+			if(Math.abs(metrics.getP99Latency() - 990000) > 990000/8) fail();
+			if(metrics.getMaxLatency() < 1000000) fail();
+			metrics.recordOutcome(true);
+			metrics.recordOutcome(false);
+			if(metrics.getErrorRate()!=0.5d) fail();
+			metrics.reset();
+			if(metrics.getMatchCount()!=0 || metrics.getP99Latency()!=0) fail();
+
+			// Erfassung durch das Netz und den daraus erzeugten PatternClassifier.
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Logistic());
+			pa.train(this.fullPatternSet, true, 10, null);
+			pa.setMetrics(metrics);
+			for(Pattern sample: this.fullPatternSet) pa.match(sample);
+			pa.matchAll(this.fullPatternSet);
+			PatternClassifier classifier = pa.freeze();
+			for(Pattern sample: this.fullPatternSet) classifier.classify(sample);
+			if(metrics.getMatchCount()!=9) fail();
+			try {
+				pa.match(new Pattern("z", new String[] { "X." }));
+				fail();
+			} catch(InappropriateDataException ex) {
+			}
+			if(metrics.getFailureCount()!=1 || metrics.getMatchCount()!=9) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testSaveAndLoad() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_TangensHyperbolicus());
+			pa.train(this.fullPatternSet, true, 10, null);
+			PatternClassifier original = pa.freeze();
+
+			File file = File.createTempFile("model", ".nn4");
+			try {
+				original.save(file);
+				PatternClassifier loaded = PatternClassifier.load(file);
+				if(loaded.get_noOfInputs()!=42 || loaded.get_noOfOutputs()!=3) fail();
+				for(int o=0; o<3; o++) {
+					if(loaded.get_semantic(o).compareTo(original.get_semantic(o))!=0) fail();
+				}
+				for(Pattern sample: this.fullPatternSet.createRandomized(200, 5, true)) {
+					if(loaded.classify(sample).compareTo(original.classify(sample))!=0) fail();
+				}
+
+				// Aus dem Modell erzeugtes Netz ist bereits trainiert.
+				PatternAssociator restored = new PatternAssociator(loaded, 0.5d);
+				for(Pattern sample: this.fullPatternSet) {
+					if(restored.match(sample).compareTo(pa.match(sample))!=0) fail();
+				}
+			} finally {
+				file.delete();
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Keine Modelldatei.
+		try {
+			File file = File.createTempFile("model", ".nn4");
+			try {
+				PatternClassifier.load(file);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Negative Anzahl semantischer Bedeutungen.
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Linear());
+			pa.train(this.fullPatternSet, true, 1, null);
+			File file = File.createTempFile("model", ".nn4");
+			try {
+				pa.freeze().save(file);
+				int offset = 4*4 + 4 + new ActivationFunction_Linear().getName().length() + 4 + Precision.DOUBLE.name().length();
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					raw.seek(offset);
+					if(raw.readInt()!=3) fail();
+					raw.seek(offset);
+					raw.writeInt(-1);
+				}
+				PatternClassifier.load(file);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Dimensionen, deren Gewichtsmatrix nicht in der Datei liegt (2^30 x 3 Gewichte überlaufen int).
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Linear());
+			pa.train(this.fullPatternSet, true, 1, null);
+			File file = File.createTempFile("model", ".nn4");
+			try {
+				pa.freeze().save(file);
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					raw.seek(2*4);
+					if(raw.readInt()!=42 || raw.readInt()!=3) fail();
+					raw.seek(2*4);
+					raw.writeInt(1<<30);
+				}
+				PatternClassifier.load(file);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testFreeze() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Linear());
+			pa.freeze();
+			fail();
+		} catch(NeuralNetworkIsUntrainedException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Logistic());
+			pa.train(this.fullPatternSet, false, 10, new Random(4711));
+			PatternClassifier classifier = pa.freeze();
+			PatternSet samples = this.fullPatternSet.createRandomized(200, 5, true);
+
+			String[] expected = new String[samples.size()];
+			int i=0;
+			for(Pattern sample: samples) {
+				expected[i] = pa.match(sample);
+				if(classifier.classify(sample).compareTo(expected[i])!=0) fail();
+				i++;
+			}
+
+			// Weiteres Training darf den Schnappschuss nicht verändern.
+			pa.train(this.fullPatternSet, true, 10, null);
+
+			// Gleichzeitige Erkennung aus mehreren Threads.
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+				for(int t=0; t<4; t++) {
+					results.add(executor.submit(() -> {
+						Workspace workspace = classifier.createWorkspace();
+						int j=0;
+						for(Pattern sample: samples) {
+							if(classifier.classify(sample, workspace).compareTo(expected[j++])!=0) return false;
+						}
+						return true;
+					}));
+				}
+				for(Future<Boolean> result: results) {
+					if( ! result.get() ) fail();
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testTrainSharded() {
+		try {
+			PatternAssociator sequential = new PatternAssociator(42, 3, 0.1d, new ActivationFunction_Logistic());
+			sequential.train(this.fullPatternSet, true, 20, new Random(4711));
+
+			PatternAssociator[] sharded = new PatternAssociator[3];
+			for(int threads=1; threads<=3; threads++) {
+				sharded[threads-1] = new PatternAssociator(42, 3, 0.1d, new ActivationFunction_Logistic());
+				sharded[threads-1].setNumberOfShards(3);
+				sharded[threads-1].setNumberOfThreads(threads);
+				sharded[threads-1].train(this.fullPatternSet, true, 20, new Random(4711));
+			}
+
+			// Bei gleicher Anzahl Teile identisch, unabhängig von der Anzahl der Threads.
+			if( ! sharded[0].getWeigthMatrix().equals(sharded[1].getWeigthMatrix()) ) fail();
+			if( ! sharded[0].getWeigthMatrix().equals(sharded[2].getWeigthMatrix()) ) fail();
+
+			// Bis auf Rundungsfehler identisch mit dem sequentiellen Batch-Learning.
+			double distance = sequential.getWeigthMatrix().subtract(sharded[0].getWeigthMatrix()).getNorm();
+			if(distance>1e-9) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testTrainAsynchronously() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.1d, new ActivationFunction_Logistic());
+			pa.setNumberOfThreads(4);
+			List<EpochStatistics> statistics = new ArrayList<EpochStatistics>();
+			pa.addTrainingListener(statistics::add);
+			TrainingResult result = pa.trainAsynchronously(this.fullPatternSet, 50, new Random(4711));
+			if(result.get_noOfEpochs()!=50 || result.get_stopReason()!=TrainingResult.StopReason.EPOCHS) fail();
+			if(statistics.size()!=50 || statistics.get(49).get_error()!=result.get_error()) fail();
+			if( ! (statistics.get(49).get_error()<statistics.get(0).get_error()) ) fail();
+
+			if(pa.match(this.pattern_a).compareTo("a")!=0) fail();
+			if(pa.match(this.pattern_b).compareTo("b")!=0) fail();
+			if(pa.match(this.pattern_c).compareTo("c")!=0) fail();
+
+			// Abbruchkriterien werden geprüft.
+			StoppingCriteria criteria = new StoppingCriteria();
+			criteria.setTargetError(0.05d);
+			pa = new PatternAssociator(42, 3, 0.1d, new ActivationFunction_Logistic());
+			result = pa.trainAsynchronously(this.fullPatternSet, 1000, new Random(4711), criteria);
+			if(result.get_stopReason()!=TrainingResult.StopReason.TARGET_ERROR || result.get_noOfEpochs()>=1000) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testTrainMiniBatch() {
+		try {
+			// Eine Gruppe mit allen Bitmustern entspricht dem Batch-Learning. Mehr Bitmuster als in einen Block passen.
+			// Fester Startwert, damit die Erkennung nach kurzem Training unten nicht vom Zufall abhängt.
+			PatternSet templates = new PatternSet(new ArrayList<Pattern>(Arrays.asList(this.pattern_a, this.pattern_b, this.pattern_c)), new Random(4711));
+			PatternSet samples = templates.createRandomized(150, 5, true);
+			for(Precision precision: Precision.values()) {
+				PatternAssociator batch     = new PatternAssociator(42, 3, 0.05d, new ActivationFunction_Logistic(), precision);
+				PatternAssociator miniBatch = new PatternAssociator(42, 3, 0.05d, new ActivationFunction_Logistic(), precision);
+				TrainingResult batchResult     = batch.train(samples, true, 5, null);
+				TrainingResult miniBatchResult = miniBatch.trainMiniBatch(samples, samples.size(), 5, null, null);
+				if(!batch.getWeigthMatrix().equals(miniBatch.getWeigthMatrix())) fail();
+				if(batchResult.get_error()!=miniBatchResult.get_error()) fail();
+			}
+
+			// Gruppengröße größer als die Trainingsdaten; die Gruppe wird in mehreren Abschnitten verarbeitet.
+			PatternSet large = templates.createRandomized(2500, 5, true);
+			for(int batchSize: new int[]{large.size(), large.size()+10, Integer.MAX_VALUE}) {
+				PatternAssociator batch     = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Logistic());
+				PatternAssociator miniBatch = new PatternAssociator(42, 3, 0.01d, new ActivationFunction_Logistic());
+				TrainingResult batchResult     = batch.train(large, true, 3, null);
+				TrainingResult miniBatchResult = miniBatch.trainMiniBatch(large, batchSize, 3, null, null);
+				if(!batch.getWeigthMatrix().equals(miniBatch.getWeigthMatrix())) fail();
+				if(batchResult.get_error()!=miniBatchResult.get_error()) fail();
+			}
+
+			// Kleine Gruppen, zufällige Reihenfolge.
+			for(int batchSize: new int[]{1, 2, 32}) {
+				PatternAssociator pa = new PatternAssociator(42, 3, 0.1d, new ActivationFunction_TangensHyperbolicus());
+				TrainingResult result = pa.trainMiniBatch(samples, batchSize, 5, new Random(4711), null);
+				if(result.get_noOfEpochs()!=5) fail();
+				if(pa.match(this.pattern_a).compareTo("a")!=0) fail();
+				if(pa.match(this.pattern_b).compareTo("b")!=0) fail();
+				if(pa.match(this.pattern_c).compareTo("c")!=0) fail();
+			}
+
+			// Abbruchkriterien werden geprüft.
+			StoppingCriteria criteria = new StoppingCriteria();
+			criteria.setTargetError(0.05d);
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.05d, new ActivationFunction_Logistic());
+			TrainingResult result = pa.trainMiniBatch(samples, 16, 1000, new Random(4711), criteria);
+			if(result.get_stopReason()!=TrainingResult.StopReason.TARGET_ERROR || result.get_noOfEpochs()>=1000) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+
+		try {
+			new PatternAssociator(42, 3, 0.05d, new ActivationFunction_Logistic()).trainMiniBatch(this.fullPatternSet, 0, 1, null, null);
+			fail();
+		} catch(IllegalArgumentException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testFloatPrecision() {
+		try {
+			PatternAssociator exact = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_TangensHyperbolicus());
+			PatternAssociator pa    = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_TangensHyperbolicus(), Precision.FLOAT);
+			if(pa.get_precision()!=Precision.FLOAT) fail();
+			exact.train(this.fullPatternSet, true, 10, null);
+			pa.train(this.fullPatternSet, true, 10, null);
+
+			// Die Gewichte weichen höchstens um Rundungsfehler ab.
+			Array2DRowRealMatrix difference = exact.getWeigthMatrix().subtract(pa.getWeigthMatrix());
+			if(difference.getNorm()>1e-5d) fail();
+
+			for(Pattern sample: this.fullPatternSet.createRandomized(200, 5, true)) {
+				if(pa.match(sample).compareTo(exact.match(sample))!=0) fail();
+			}
+			int i=0;
+			PatternSet samples = this.fullPatternSet.createRandomized(100, 5, true);
+			int[] answers = pa.matchAll(samples);
+			for(Pattern sample: samples) {
+				if(answers[i++]!=pa.matchIndex(sample)) fail();
+			}
+
+			// Die Genauigkeit bleibt beim Speichern und Laden erhalten.
+			PatternClassifier original = pa.freeze();
+			if(original.get_precision()!=Precision.FLOAT) fail();
+			File file = File.createTempFile("model", ".nn4");
+			try {
+				original.save(file);
+				if(file.length()>42*3*Float.BYTES+100) fail();
+				PatternClassifier loaded = PatternClassifier.load(file);
+				if(loaded.get_precision()!=Precision.FLOAT) fail();
+				for(Pattern sample: samples) {
+					if(loaded.classifyIndex(sample)!=original.classifyIndex(sample)) fail();
+				}
+			} finally {
+				file.delete();
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testQuantize() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_TangensHyperbolicus());
+			pa.train(this.fullPatternSet, true, 10, null);
+			PatternClassifier classifier = pa.freeze();
+
+			for(BinaryClassifier.Quantization quantization: BinaryClassifier.Quantization.values()) {
+				BinaryClassifier quantized = classifier.quantize(quantization);
+				if(quantized.get_quantization()!=quantization) fail();
+				if(quantized.get_noOfInputs()!=42 || quantized.get_noOfOutputs()!=3) fail();
+				for(int o=0; o<3; o++) {
+					if(quantized.get_semantic(o).compareTo(classifier.get_semantic(o))!=0) fail();
+				}
+				// Die Originale werden auch quantisiert erkannt.
+				if(quantized.classify(this.pattern_a).compareTo("a")!=0) fail();
+				if(quantized.classify(this.pattern_b).compareTo("b")!=0) fail();
+				if(quantized.classify(this.pattern_c).compareTo("c")!=0) fail();
+			}
+
+			// Bitmuster passender Breite, aber falscher Größe.
+			try {
+				classifier.quantize(BinaryClassifier.Quantization.BINARY).classifyIndex(new Pattern("z", new String[]{"X."}));
+				fail();
+			} catch(InappropriateDataException ex) {
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testEvaluation() {
+		try {
+			PatternSet templates = new PatternSet(new ArrayList<Pattern>(Arrays.asList(this.pattern_a, this.pattern_b, this.pattern_c)), new Random(4711));
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Logistic());
+			pa.train(templates, true, 10, null);
+			PatternClassifier classifier = pa.freeze();
+			int[] labelOfOutput = new int[classifier.get_noOfOutputs()];
+			for(int o=0; o<labelOfOutput.length; o++) labelOfOutput[o] = templates.get_labelId(classifier.get_semantic(o));
+
+			// Genug Samples, damit der parallele Stream geteilt wird. Viele Fehler je Sample, damit auch falsche Antworten vorkommen.
+			Evaluation sequential = Evaluation.evaluate(classifier, labelOfOutput, templates.streamRandomizedWithLabels(10000, 12, true, new SeedSequence(4711)), 1, null, null);
+			Evaluation parallel   = Evaluation.evaluate(classifier, labelOfOutput, templates.streamRandomizedWithLabels(10000, 12, true, new SeedSequence(4711)), 4, null, null);
+			Evaluation blocked    = Evaluation.evaluate(classifier, labelOfOutput, templates.streamRandomizedWithLabels(10000, 12, true, new SeedSequence(4711)), 1, pa, null);
+			if(sequential.get_noOfSamples()!=10003) fail();
+			if(sequential.get_noOfErrors()<1 || sequential.get_noOfErrors()>=sequential.get_noOfSamples()) fail();
+			if(parallel.get_noOfSamples()!=sequential.get_noOfSamples() || parallel.get_noOfErrors()!=sequential.get_noOfErrors()) fail();
+			if(blocked.get_noOfSamples()!=sequential.get_noOfSamples() || blocked.get_noOfErrors()!=sequential.get_noOfErrors()) fail();
+
+			// Auch die Metriken erfassen bei paralleler Auswertung alle Ergebnisse.
+			MatchMetrics metrics = new MatchMetrics();
+			Evaluation.evaluate(classifier, labelOfOutput, templates.streamRandomizedWithLabels(10000, 12, true, new SeedSequence(4711)), 4, null, metrics);
+			if(metrics.getErrorRate()!=(double) sequential.get_noOfErrors() / sequential.get_noOfSamples()) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testMatchCache() {
+		try {
+			PatternAssociator pa = new PatternAssociator(42, 3, 0.5d, new ActivationFunction_Linear());
+			pa.train(this.fullPatternSet, true, 1, null);
+			if(pa.get_matchCache()!=null) fail();
+			pa.setMatchCacheSize(2);
+			MatchCache cache = pa.get_matchCache();
+
+			// Gleiche Bits mit anderem Namen treffen denselben Eintrag.
+			if(pa.match(this.pattern_a).compareTo("a")!=0) fail();
+			boolean[][] bits = new boolean[7][6];
+			for(int row=0; row<7; row++) for(int col=0; col<6; col++) bits[row][col] = this.pattern_a.get(row, col);
+			if(pa.match(new Pattern("x", bits)).compareTo("a")!=0) fail();
+			if(cache.get_hits()!=1 || cache.get_misses()!=1) fail();
+
+			// Verdrängung: a wurde getroffen und bekommt eine zweite Chance, b wird verdrängt.
+			if(pa.match(this.pattern_b).compareTo("b")!=0) fail();
+			if(pa.match(this.pattern_c).compareTo("c")!=0) fail();
+			if(cache.get_size()!=2 || cache.get_evictions()!=1) fail();
+			if(pa.match(this.pattern_a).compareTo("a")!=0) fail();
+			if(cache.get_hits()!=2) fail();
+
+			// matchAll() liefert dieselben Ergebnisse und nutzt den Cache.
+			int[] result = pa.matchAll(this.fullPatternSet);
+			for(int p=0; p<result.length; p++) {
+				if(pa.get_semantic(result[p]).compareTo(this.fullPatternSet.get_pattern(p).get_name())!=0) fail();
+			}
+			if(cache.get_hits()<3) fail();
+
+			// Weiteres Training leert den Cache.
+			pa.train(this.fullPatternSet, true, 1, null);
+			long misses = cache.get_misses();
+			if(pa.match(this.pattern_a).compareTo(pa.freeze().classify(this.pattern_a))!=0) fail();
+			if(cache.get_invalidations()!=1 || cache.get_misses()!=misses+1) fail();
+
+			// Wiederholte Bitmuster in einem Block von matchAll() belegen nur einen Eintrag.
+			pa.setMatchCacheSize(16);
+			cache = pa.get_matchCache();
+			List<Pattern> block = Arrays.asList(this.pattern_a, this.pattern_a, this.pattern_b, this.pattern_a, this.pattern_c, this.pattern_b);
+			int[] answers = pa.matchAll(block);
+			PatternClassifier classifier = pa.freeze();
+			for(int p=0; p<answers.length; p++) {
+				if(pa.get_semantic(answers[p]).compareTo(classifier.classify(block.get(p)))!=0) fail();
+			}
+			if(cache.get_size()!=3) fail();
+			pa.matchAll(block);
+			if(cache.get_size()!=3 || cache.get_hits()!=block.size()) fail();
+
+			pa.setMatchCacheSize(0);
+			if(pa.get_matchCache()!=null) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testNearestTemplate() {
+		try {
+			NearestTemplateClassifier classifier = new NearestTemplateClassifier(this.fullPatternSet, null);
+			if(classifier.get_noOfTemplates()!=3 || classifier.get_noOfOutputs()!=3) fail();
+			if(classifier.classify(this.pattern_a).compareTo("a")!=0) fail();
+			if(classifier.classify(this.pattern_b).compareTo("b")!=0) fail();
+			if(classifier.classify(this.pattern_c).compareTo("c")!=0) fail();
+			if(classifier.classify(this.pattern_b.changeRandomly(new Random(1))).compareTo("b")!=0) fail();
+
+			// Viele Vorlagen, damit der Index statt des Vergleichs mit allen Vorlagen benutzt wird.
+			Random random = new Random(4711);
+			ArrayList<Pattern> templates = new ArrayList<Pattern>();
+			for(int t=0; t<2000; t++) {
+				boolean[][] bits = new boolean[16][16];
+				for(int y=0; y<16; y++) for(int x=0; x<16; x++) bits[y][x] = random.nextDouble()<0.3d;
+				templates.add(new Pattern("t" + t, bits));
+			}
+			classifier = new NearestTemplateClassifier(new PatternSet(templates, null), null);
+			if(classifier.get_noOfTemplates()!=2000 || classifier.get_noOfChunks()<2) fail();
+			for(int q=0; q<200; q++) {
+				Pattern pattern = templates.get(random.nextInt(templates.size()));
+				for(int k=0; k<8; k++) pattern = pattern.changeRandomly(random);
+				// Ergebnis muss dem Vergleich mit allen Vorlagen entsprechen.
+				int best = 0;
+				for(int t=1; t<templates.size(); t++) {
+					if(pattern.differences(templates.get(t))<pattern.differences(templates.get(best))) best = t;
+				}
+				if(classifier.nearest(pattern)!=best) fail();
+			}
+
+			// Bitmuster passender Breite, aber falscher Größe.
+			try {
+				classifier.classifyIndex(new Pattern("z", new String[]{"X..............."}));
+				fail();
+			} catch(InappropriateDataException ex) {
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testVectorKernels() {
+		// Ohne das Modul jdk.incubator.vector gibt es nur die skalare Variante.
+		if(!PatternAssociator.isVectorized()) return;
+		try {
+			Random random = new Random(4711);
+			int noOfInputs  = 7;
+			int noOfOutputs = 21; // Kein Vielfaches der Vektorlänge, damit auch die Restschleifen laufen.
+			double[] weigths = new double[noOfInputs * noOfOutputs];
+			float[]  floats  = new float[weigths.length];
+			for(int i=0; i<weigths.length; i++) {
+				weigths[i] = random.nextGaussian();
+				floats[i]  = (float) weigths[i];
+			}
+			int[]    rows   = {5, 0, 3, 6};
+			double[] values = new double[noOfOutputs];
+			for(int o=0; o<noOfOutputs; o++) values[o] = random.nextGaussian();
+
+			// Netto-Inputs: bitgleich zur skalaren Summation.
+			double[] vector = new double[noOfOutputs];
+			double[] scalar = new double[noOfOutputs];
+			VectorKernels.sumRows(weigths, noOfOutputs, rows, rows.length, vector);
+			for(int k=0; k<rows.length; k++) {
+				for(int o=0; o<noOfOutputs; o++) scalar[o] += weigths[rows[k]*noOfOutputs+o];
+			}
+			if(!Arrays.equals(vector, scalar)) fail();
+
+			Arrays.fill(vector, 0d);
+			Arrays.fill(scalar, 0d);
+			VectorKernels.sumRows(floats, noOfOutputs, rows, rows.length, vector);
+			for(int k=0; k<rows.length; k++) {
+				for(int o=0; o<noOfOutputs; o++) scalar[o] += floats[rows[k]*noOfOutputs+o];
+			}
+			if(!Arrays.equals(vector, scalar)) fail();
+
+			// Addition auf die Zeilen der aktiven Input-Neuronen.
+			double[] weigthsCopy = Arrays.copyOf(weigths, weigths.length);
+			float[]  floatsCopy  = Arrays.copyOf(floats, floats.length);
+			VectorKernels.addToRows(weigths, noOfOutputs, rows, rows.length, values);
+			VectorKernels.addToRows(floats, noOfOutputs, rows, rows.length, values);
+			for(int k=0; k<rows.length; k++) {
+				for(int o=0; o<noOfOutputs; o++) {
+					int index = rows[k]*noOfOutputs+o;
+					weigthsCopy[index] += values[o];
+					floatsCopy[index]   = (float) (floatsCopy[index] + values[o]);
+				}
+			}
+			if(!Arrays.equals(weigths, weigthsCopy)) fail();
+			if(!Arrays.equals(floats, floatsCopy)) fail();
+
+			// Kachel der Matrixmultiplikation mit Randbereich, der nicht bei 0 beginnt.
+			double[] input = new double[noOfInputs];
+			for(int i=0; i<noOfInputs; i++) input[i] = random.nextBoolean() ? 1d : 0.5d;
+			Arrays.fill(vector, 0d);
+			Arrays.fill(scalar, 0d);
+			VectorKernels.multiplyTile(weigths, noOfOutputs, input, 0, 1, 6, 3, 20, vector, 0);
+			for(int i=1; i<6; i++) {
+				for(int o=3; o<20; o++) scalar[o] += input[i] * weigths[i*noOfOutputs+o];
+			}
+			if(!Arrays.equals(vector, scalar)) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	/**
+	 * Referenzberechnung über ActivationFunction.visit() und die Matrizen von commons-math.
+	 */
+	private String matchWithVisitor(PatternAssociator pa, ActivationFunction function, Pattern pattern) {
+		ArrayRealVector input = new ArrayRealVector(pattern.get_numberOfBits());
+		for(int i=0; i<pattern.get_numberOfBits(); i++) {
+			input.setEntry(i, pattern.get(i) ? 1.0d : 0.0d);
+		}
+		function.setInputVector(input);
+		function.setWeigths(pa.getWeigthMatrix());
+		ArrayRealVector output = new ArrayRealVector(3);
+		output.walkInDefaultOrder(function);
+
+		String[] semantic = this.fullPatternSet.getListOfName();
+		int maxValueIndex = 0;
+		for(int i=1; i<output.getDimension(); i++) {
+			if(output.getEntry(i)>output.getEntry(maxValueIndex)) maxValueIndex=i;
+		}
+		return semantic[maxValueIndex];
+	}
+
 }
@@ -3,6 +3,7 @@ package de.wbongartz.pattern_recognition.patterns;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.*;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.fail;
@@ -154,6 +155,233 @@ public class PatternSetTest {
 		}
 	}
 	
+	@Test
+	public void testLabelIds() {
+		try {
+			PatternSet letters = new PatternSet(_patternArray, _randomNumberSource);
+			String[] labels = letters.get_labels();
+			for(int i=0; i<letters.size(); i++) {
+				Pattern pattern = letters.get_pattern(i);
+				if(letters.get_labelId(i)!=i) fail();
+				if(labels[letters.get_labelId(i)].compareTo(pattern.get_name())!=0) fail();
+				if(letters.get_labelId(pattern.get_name())!=i) fail();
+			}
+			if(letters.get_labelId("z")!=-1) fail();
+
+			// Abgeleitete Bitmuster erhalten im neuen PatternSet die Label-Id ihrer Vorlage.
+			PatternSet samples = letters.createRandomized(100, 3, false);
+			for(int i=0; i<samples.size(); i++) {
+				if(labels[samples.get_labelId(i)].compareTo(samples.get_pattern(i).get_name())!=0) fail();
+			}
+
+			// Ein vorgegebenes Wörterbuch bestimmt die Label-Ids.
+			ArrayList<Pattern> reversed = new ArrayList<Pattern>(_patternArray);
+			Collections.reverse(reversed);
+			PatternSet withDictionary = new PatternSet(reversed, _randomNumberSource, labels);
+			if(withDictionary.get_labelId(0)!=3 || !Arrays.equals(withDictionary.get_labels(), labels)) fail();
+
+			// Die Label-Ids gehören dem PatternSet: Ein weiteres PatternSet mit denselben Bitmustern ändert sie nicht.
+			PatternSet withoutDictionary = new PatternSet(reversed, _randomNumberSource);
+			if(withoutDictionary.get_labelId(0)!=0 || withoutDictionary.get_labels()[0].compareTo("x")!=0) fail();
+			if(letters.get_labelId(3)!=3 || withDictionary.get_labelId(0)!=3) fail();
+		} catch (Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testRandomPatternIterator() {
+		try {
+			PatternSet samples = new PatternSet(_patternArray, _randomNumberSource).createRandomized(1000, 3, false);
+			RandomPatternIterator iter = new RandomPatternIterator(samples, new Random(4711));
+			for(int epoch=0; epoch<3; epoch++) {
+				iter.reset();
+				IdentityHashMap<Pattern, Boolean> seen = new IdentityHashMap<Pattern, Boolean>();
+				while(iter.hasNext()) {
+					if(seen.put(iter.next(), Boolean.TRUE)!=null) fail();
+				}
+				if(seen.size()!=samples.size()) fail();
+				if(iter.next()!=null) fail();
+			}
+		} catch (Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testStreamRandomized() {
+		try {
+			PatternSet materialized = new PatternSet(_patternArray, new Random(4711)).createRandomized(500, 5, true);
+			Iterator<Pattern> expected = materialized.iterator();
+			Iterator<Pattern> actual = new PatternSet(_patternArray, new Random(4711)).streamRandomized(500, 5, true).iterator();
+			while(expected.hasNext()) {
+				if( ! actual.hasNext() ) fail();
+				if( ! expected.next().equals(actual.next()) ) fail();
+			}
+			if( actual.hasNext() ) fail();
+
+			PatternSet letters = new PatternSet(_patternArray, _randomNumberSource);
+			long count = letters.streamRandomized(10000, 3, false).parallel().filter(p -> p.differences(findTemplate(p))<=3).count();
+			if(count!=10000) fail();
+		} catch (Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testStreamRandomizedParallel() {
+		try {
+			PatternSet letters = new PatternSet(_patternArray, _randomNumberSource);
+			List<Pattern> sequential = letters.streamRandomized(20000, 5, true, new SeedSequence(4711)).collect(java.util.stream.Collectors.toList());
+			List<Pattern> parallel   = letters.streamRandomized(20000, 5, true, new SeedSequence(4711)).parallel().collect(java.util.stream.Collectors.toList());
+			if( ! sequential.equals(parallel) ) fail();
+
+			List<Pattern> other = letters.streamRandomized(20000, 5, true, new SeedSequence(4712)).collect(java.util.stream.Collectors.toList());
+			if( sequential.equals(other) ) fail();
+
+			// Die Variante mit Label-Ids liefert dieselben Bitmuster, jeweils mit der Label-Id ihres Namens.
+			List<LabeledPattern> labeled = letters.streamRandomizedWithLabels(20000, 5, true, new SeedSequence(4711)).parallel().collect(java.util.stream.Collectors.toList());
+			if(labeled.size()!=sequential.size()) fail();
+			for(int i=0; i<labeled.size(); i++) {
+				if( ! labeled.get(i).get_pattern().equals(sequential.get(i)) ) fail();
+				if( labeled.get(i).get_labelId()!=letters.get_labelId(sequential.get(i).get_name()) ) fail();
+			}
+		} catch (Exception ex) {
+			fail();
+		}
+	}
+
+	private Pattern findTemplate(Pattern p) {
+		for(Pattern template: _patternArray) {
+			if(template.get_name().compareTo(p.get_name())==0) return template;
+		}
+		return null;
+	}
+
+	@Test
+	public void testCompiledCorpus() {
+		try {
+			PatternSet letters = new PatternSet(_patternArray, _randomNumberSource);
+			PatternSet samples = letters.createRandomized(500, 5, true);
+			File file = File.createTempFile("corpus", ".nn4c");
+			try {
+				PatternCorpus.compile(samples, file);
+				PatternSet loaded = PatternCorpus.load(file, _randomNumberSource);
+				if(loaded.size()!=samples.size()) fail();
+				for(int i=0; i<samples.size(); i++) {
+					Pattern expected = samples.get_pattern(i);
+					Pattern actual   = loaded.get_pattern(i);
+					if(!actual.equals(expected)) fail();
+					if(actual.get_height()!=8 || actual.get_width()!=6) fail();
+				}
+				if(loaded.getListOfName().length!=4) fail();
+			} finally {
+				file.delete();
+			}
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Keine Korpus-Datei.
+		try {
+			File file = File.createTempFile("corpus", ".nn4c");
+			try {
+				PatternCorpus.load(file, null);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Negative Anzahl Namen.
+		try {
+			File file = compiledCorpus();
+			try {
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					raw.seek(5*4);
+					raw.writeInt(-1);
+				}
+				PatternCorpus.load(file, null);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Dimensionen, deren Produkt int überläuft (65536 x 65536 ergibt 0 Bits in 0 Wörtern).
+		try {
+			File file = compiledCorpus();
+			try {
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					raw.seek(2*4);
+					raw.writeInt(65536);
+					raw.writeInt(65536);
+					raw.writeInt(0);
+				}
+				PatternCorpus.load(file, null);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Mehr Bitmuster, als die Datei enthält (4 Vorlagen mit je einem Wort, Anzahl direkt vor den Namensindizes).
+		try {
+			File file = compiledCorpus();
+			try {
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					long offset = raw.length() - 4*(Integer.BYTES + Long.BYTES) - Integer.BYTES;
+					raw.seek(offset);
+					if(raw.readInt()!=4) fail();
+					raw.seek(offset);
+					raw.writeInt(5);
+				}
+				PatternCorpus.load(file, null);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+
+		// Gesetzte Bits außerhalb des Bitmusters (8x6 Bits belegen nur einen Teil des Wortes).
+		try {
+			File file = compiledCorpus();
+			try {
+				try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+					raw.seek(raw.length()-Long.BYTES);
+					long word = raw.readLong();
+					raw.seek(raw.length()-Long.BYTES);
+					raw.writeLong(word | Long.MIN_VALUE);
+				}
+				PatternCorpus.load(file, null);
+				fail();
+			} finally {
+				file.delete();
+			}
+		} catch(IOException ex) {
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	private File compiledCorpus() throws Exception {
+		File file = File.createTempFile("corpus", ".nn4c");
+		PatternCorpus.compile(new PatternSet(_patternArray, _randomNumberSource), file);
+		return file;
+	}
+
 	//	@Test
 //	public void  test_find_pattern() {
 //		try {
@@ -215,6 +215,61 @@ public class PatternTest {
 		}
 	}
 
+	@Test
+	public void testDifferencesAcrossWords() {
+		String[] wide = new String[10];
+		for(int i=0; i<10; i++) wide[i]="..........";
+		Pattern pattern1 = new Pattern("wide", wide);
+		Pattern pattern2 = new Pattern(pattern1);
+
+		try {
+			if( pattern1.get_numberOfBits() != 100 ) fail();
+			if( pattern1.get_numberOfWords() != 2 ) fail();
+
+			pattern1.set(6, 3, true); // Bit 63: letztes Bit des ersten Wortes.
+			pattern1.set(6, 4, true); // Bit 64: erstes Bit des zweiten Wortes.
+			pattern1.set(9, 9, true); // Bit 99: letztes Bit des Musters.
+			if( pattern1.differences(pattern2) != 3) fail();
+			if( ! pattern1.get(63) || ! pattern1.get(64) || ! pattern1.get(99) ) fail();
+			if( pattern1.equals(pattern2) ) fail();
+
+			pattern2.set(6, 3, true);
+			pattern2.set(6, 4, true);
+			pattern2.set(9, 9, true);
+			if( pattern1.differences(pattern2) != 0) fail();
+			if( ! pattern1.equals(pattern2) ) fail();
+			if( pattern1.hashCode() != pattern2.hashCode() ) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testGetSetBits() {
+		Pattern pattern = new Pattern("b", _raw);
+		int[] setBits = new int[pattern.get_numberOfBits()];
+		try {
+			int count = pattern.get_setBits(setBits);
+			int expected = 0;
+			for(int i=0; i<8; i++) {
+				for(int j=0; j<8; j++) {
+					if(_raw[i].charAt(j)=='X') {
+						if(setBits[expected++]!=i*8+j) fail();
+					}
+				}
+			}
+			if(count!=expected) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+
+		try {
+			pattern.get_setBits(new int[3]);
+			fail();
+		} catch(Exception ex) {
+		}
+	}
+
 	@Test
 	public void testEqualsObject() {
 		try {
@@ -255,6 +310,21 @@ public class PatternTest {
 		}
 	}
 
+	@Test
+	public void testBitsHashCode() {
+		try {
+			Pattern pattern  = new Pattern("b", _raw);
+			Pattern renamed  = new Pattern("x", _raw);
+			if( pattern.bitsHashCode() != renamed.bitsHashCode() ) fail();
+			if( pattern.bitsHashCode() != new Pattern(pattern).bitsHashCode() ) fail();
+
+			renamed.set(1, 1, !renamed.get(1, 1));
+			if( pattern.bitsHashCode() == renamed.bitsHashCode() ) fail();
+		} catch(Exception ex) {
+			fail();
+		}
+	}
+
 	@Test
 	public void swapRandomly() {
 		Pattern pattern1 = new Pattern("b", _raw);